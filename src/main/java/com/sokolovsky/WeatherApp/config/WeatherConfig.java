@@ -4,6 +4,9 @@ import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 @Getter
 public class WeatherConfig {
@@ -16,8 +19,288 @@ public class WeatherConfig {
     @Value("${weather.weather-url}")
     private String weatherUrl;
 
+    /**
+     * Maximum number of cities kept in the weather cache, 0 for no bound.
+     * Ignored when a maximum weight is set.
+     */
+    @Value("${weather.cache.max-size:1000}")
+    private long cacheMaxSize;
+
+    /**
+     * Maximum estimated size of the weather cache in bytes, 0 to bound by entry count instead.
+     */
+    @Value("${weather.cache.max-weight-bytes:0}")
+    private long cacheMaxWeightBytes;
+
+    /**
+     * How long weather data stays in the cache, 0 for no expiry.
+     */
+    @Value("${weather.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${weather.cache.expiry:WRITE}")
+    private CacheExpiry cacheExpiry;
+
+    /**
+     * Age after which a cached entry is still served but reloaded in the background, 0 to disable.
+     * Must be shorter than the TTL, which then acts as the hard maximum staleness.
+     */
+    @Value("${weather.cache.refresh-after:0s}")
+    private Duration cacheRefreshAfter;
+
+    /**
+     * Number of threads reloading entries in the background when refresh-ahead is enabled.
+     */
+    @Value("${weather.cache.refresh-threads:4}")
+    private int cacheRefreshThreads;
+
+    /**
+     * Where cached weather is kept. OFF_HEAP preallocates max-size fixed-size slots outside the heap,
+     * ignores max-weight-bytes and expiry ACCESS, and does not support refresh-after.
+     */
+    @Value("${weather.cache.backend:HEAP}")
+    private CacheBackend cacheBackend;
+
+    /**
+     * Directory where the weather cache of each API key is saved on shutdown and periodically,
+     * and restored from on startup. Blank disables snapshots.
+     */
+    @Value("${weather.cache.snapshot-dir:}")
+    private String cacheSnapshotDir;
+
+    /**
+     * Time between two periodic cache snapshots, 0 to only save on shutdown.
+     */
+    @Value("${weather.cache.snapshot-interval:5m}")
+    private Duration cacheSnapshotInterval;
+
+    /**
+     * Size of the worker pool shared by all polling services, i.e. the maximum number
+     * of cities refreshed at the same time across all API keys in POLLING mode.
+     */
+    @Value("${weather.polling.parallelism:8}")
+    private int pollingParallelism;
+
+    /**
+     * Upper bound of the random delay before each city refresh in POLLING mode.
+     */
+    @Value("${weather.polling.max-jitter:30s}")
+    private Duration pollingMaxJitter;
+
+    /**
+     * Upstream refresh budget per minute and API key in POLLING mode. When set, refreshes are
+     * spent on cities in proportion to how often they are requested. 0 refreshes every
+     * cached city every 10 minutes.
+     */
+    @Value("${weather.polling.calls-per-minute:0}")
+    private int pollingCallsPerMinute;
+
+    /**
+     * Time after which a city request counts half as much towards its popularity.
+     */
+    @Value("${weather.polling.popularity-half-life:10m}")
+    private Duration pollingPopularityHalfLife;
+
+    /**
+     * Upstream calls per minute allowed for one API key, 0 for no limit.
+     */
+    @Value("${weather.rate-limit.calls-per-minute:0}")
+    private int rateLimitCallsPerMinute;
+
+    /**
+     * Number of upstream calls allowed at once, 0 for the per-minute limit.
+     */
+    @Value("${weather.rate-limit.burst:0}")
+    private int rateLimitBurst;
+
+    /**
+     * Fraction of the rate limit kept for on-demand requests, which background refreshes cannot use.
+     */
+    @Value("${weather.rate-limit.background-reserve:0.2}")
+    private double rateLimitBackgroundReserve;
+
+    @Value("${weather.rate-limit.on-exhausted:WAIT}")
+    private RateLimitMode rateLimitOnExhausted;
+
+    /**
+     * Longest time an on-demand request waits for the rate limit in WAIT mode.
+     */
+    @Value("${weather.rate-limit.max-wait:5s}")
+    private Duration rateLimitMaxWait;
+
+    /**
+     * Number of consecutive failed upstream calls that opens the circuit breaker, 0 to disable it.
+     */
+    @Value("${weather.circuit-breaker.failure-threshold:0}")
+    private int circuitBreakerFailureThreshold;
+
+    /**
+     * Time the circuit breaker stays open before letting a probe call through.
+     */
+    @Value("${weather.circuit-breaker.open-duration:5s}")
+    private Duration circuitBreakerOpenDuration;
+
+    /**
+     * Longest open time; each failed probe doubles the open time up to this.
+     */
+    @Value("${weather.circuit-breaker.max-open-duration:2m}")
+    private Duration circuitBreakerMaxOpenDuration;
+
+    /**
+     * Whether slow geo and weather calls are hedged with a second identical call.
+     */
+    @Value("${weather.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    /**
+     * Percentile of recent upstream latencies after which a call is hedged.
+     */
+    @Value("${weather.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    /**
+     * Shortest time to wait for an upstream call before hedging it.
+     */
+    @Value("${weather.hedge.min-delay:20ms}")
+    private Duration hedgeMinDelay;
+
+    /**
+     * Largest fraction of upstream calls that may be hedged, bounding the extra quota used.
+     */
+    @Value("${weather.hedge.max-rate:0.05}")
+    private double hedgeMaxRate;
+
+    /**
+     * Maximum number of resolved city locations kept in memory, 0 for no bound.
+     */
+    @Value("${weather.geo-cache.max-size:10000}")
+    private long geoCacheMaxSize;
+
+    /**
+     * How long a resolved city location is kept, 0 for no expiry.
+     */
+    @Value("${weather.geo-cache.ttl:0s}")
+    private Duration geoCacheTtl;
+
+    /**
+     * File that persists resolved city locations across restarts, blank to disable.
+     */
+    @Value("${weather.geo-store.path:}")
+    private String geoStorePath;
+
+    /**
+     * Maximum number of locations kept in the geocode store, 0 for no bound.
+     */
+    @Value("${weather.geo-store.max-entries:100000}")
+    private long geoStoreMaxEntries;
+
+    /**
+     * Maximum number of on-demand upstream fetches of asynchronous requests running at the same time
+     * across all API keys.
+     */
+    @Value("${weather.async.fetch-threads:64}")
+    private int asyncFetchThreads;
+
+    /**
+     * Whether fetches, polling, refresh-ahead, hedged calls and stream sends run on virtual threads,
+     * together with servlet requests through Spring Boot. Without a limit of fetch threads, concurrent
+     * misses are then only bounded by upstream. Needs Java 21; older runtimes keep platform threads.
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Maximum number of cities in one batch request.
+     */
+    @Value("${weather.batch.max-cities:200}")
+    private int batchMaxCities;
+
+    /**
+     * Maximum number of cities of one batch request fetched upstream at the same time.
+     */
+    @Value("${weather.batch.max-concurrency:16}")
+    private int batchMaxConcurrency;
+
+    /**
+     * Number of observations kept per city for the history endpoint, 0 to keep no history.
+     */
+    @Value("${weather.history.size:144}")
+    private int historySize;
+
+    /**
+     * Maximum number of cities with a history; further cities are not recorded.
+     */
+    @Value("${weather.history.max-cities:10000}")
+    private int historyMaxCities;
+
+    /**
+     * Maximum number of cities one update stream subscribes to.
+     */
+    @Value("${weather.stream.max-cities:50}")
+    private int streamMaxCities;
+
+    /**
+     * Time after which an update stream is closed and the client has to reconnect, 0 for never.
+     */
+    @Value("${weather.stream.timeout:30m}")
+    private Duration streamTimeout;
+
+    /**
+     * Number of threads writing updates to subscribed streams when virtual threads are off.
+     */
+    @Value("${weather.stream.threads:4}")
+    private int streamThreads;
+
+    /**
+     * Longest time writing one update to a stream may take before the stream is dropped, 0 for no limit.
+     */
+    @Value("${weather.stream.send-timeout:10s}")
+    private Duration streamSendTimeout;
+
+    /**
+     * Longest time to establish a connection to the upstream API.
+     */
+    @Value("${weather.http.connect-timeout:2s}")
+    private Duration httpConnectTimeout;
+
+    /**
+     * Longest time from sending an upstream request until its response arrives.
+     */
+    @Value("${weather.http.read-timeout:5s}")
+    private Duration httpReadTimeout;
+
+    /**
+     * Preferred HTTP version for upstream calls, HTTP_2 falls back to HTTP/1.1 when not supported.
+     */
+    @Value("${weather.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
     public enum Mode {
         ON_DEMAND,
         POLLING
     }
+
+    /**
+     * What an on-demand request does when the rate limit is exhausted: wait for a token,
+     * serve the last known value even if expired, or fail right away.
+     */
+    public enum RateLimitMode {
+        WAIT,
+        SERVE_STALE,
+        FAIL_FAST
+    }
+
+    /**
+     * Whether the weather cache TTL counts from the last write or the last read of an entry.
+     * Either way an entry expires at the latest a TTL after its data was fetched.
+     */
+    public enum CacheExpiry {
+        WRITE,
+        ACCESS
+    }
+
+    public enum CacheBackend {
+        HEAP,
+        OFF_HEAP
+    }
 } 
\ No newline at end of file
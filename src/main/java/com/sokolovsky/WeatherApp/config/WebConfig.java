@@ -6,8 +6,12 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sokolovsky.WeatherApp.dto.WeatherDTO;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 /**
  * Web configuration class for the Weather App.
  * Configures HTTP client, JSON processing, and response objects.
@@ -15,12 +19,49 @@ import org.springframework.web.client.RestTemplate;
 @Configuration
 public class WebConfig {
 
+    /**
+     * Creates the HTTP client shared by all upstream calls.
+     * The JDK client keeps connections alive in its pool and reuses them across requests,
+     * so TLS handshakes with the Weather API are only made for new connections.
+     */
+    @Bean
+    public HttpClient upstreamHttpClient(WeatherConfig config) {
+        return upstreamHttpClientBuilder(config.getHttpConnectTimeout(), config.getHttpVersion()).build();
+    }
+
     /**
      * Creates RestTemplate bean for making HTTP requests to the Weather API.
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(HttpClient upstreamHttpClient, WeatherConfig config) {
+        return pooledRestTemplate(upstreamHttpClient, config.getHttpReadTimeout());
+    }
+
+    /**
+     * Returns a builder for the upstream HTTP client with the given connect timeout and preferred version.
+     *
+     * @param connectTimeout Longest time to establish a connection
+     * @param version Preferred HTTP version, HTTP_2 is negotiated via ALPN and falls back to HTTP/1.1
+     * @return Client builder, e.g. to add an SSL context
+     */
+    public static HttpClient.Builder upstreamHttpClientBuilder(Duration connectTimeout, HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(version != null ? version : HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+    }
+
+    /**
+     * Creates a RestTemplate sending its requests through the given pooled client.
+     *
+     * @param httpClient Client owning the connection pool
+     * @param readTimeout Longest time from sending a request until its response arrives
+     * @return RestTemplate using the client
+     */
+    public static RestTemplate pooledRestTemplate(HttpClient httpClient, Duration readTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(requestFactory);
     }
 
     /**
@@ -1,18 +1,33 @@
 package com.sokolovsky.WeatherApp.controller;
 
-import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.dto.CityWeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherHistoryDTO;
+import com.sokolovsky.WeatherApp.exception.CircuitOpenException;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
 import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherBatchService;
 import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
 import com.sokolovsky.WeatherApp.service.WeatherService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * REST Controller for weather data operations.
  * Provides endpoints to retrieve weather information for cities.
@@ -21,37 +36,121 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/weather")
 public class WeatherController {
     private final WeatherSDKFactory sdkFactory;
+    private final WeatherBatchService batchService;
+    private final WeatherConfig config;
     private final String apiKey;
     private static final Logger log = LoggerFactory.getLogger(WeatherController.class);
+    static final String STALE_HEADER = "X-Weather-Stale";
 
     /**
      * Creates a new WeatherController with the specified SDK factory and API key.
      *
      * @param sdkFactory Factory for creating WeatherService instances
+     * @param batchService Service fetching many cities at once
+     * @param config Weather configuration with the batch size limit
      * @param apiKey OpenWeather API key for authentication
      */
-    public WeatherController(WeatherSDKFactory sdkFactory, String apiKey) {
+    public WeatherController(WeatherSDKFactory sdkFactory,
+                             WeatherBatchService batchService,
+                             WeatherConfig config,
+                             String apiKey) {
         this.sdkFactory = sdkFactory;
+        this.batchService = batchService;
+        this.config = config;
         this.apiKey = apiKey;
     }
 
     /**
      * Retrieves current weather data for a specified city.
+     * The request thread is released while weather data is fetched from the upstream API.
+     * The response is written from the JSON rendered when the data was fetched, with an ETag
+     * and a max-age of the time left until the data is refreshed. Requests whose If-None-Match
+     * matches the ETag are answered with NOT_MODIFIED and no body.
+     * Expired data served because upstream is unavailable carries an {@value #STALE_HEADER} header.
      *
      * @param city Name of the city to get weather for
-     * @return ResponseEntity containing weather data or error status
-     * @throws WeatherApiException if city not found or API error occurs
+     * @return Future of a ResponseEntity containing weather data or error status
      */
     @GetMapping
-    public ResponseEntity<WeatherDTO> getWeather(@RequestParam String city) {
-        try {
-            WeatherService service = sdkFactory.createSDK(apiKey);
-            WeatherDTO result = service.getWeatherData(city);
-            return ResponseEntity.ok(result);
-        } catch (WeatherApiException e) {
+    public CompletableFuture<ResponseEntity<byte[]>> getWeather(@RequestParam String city) {
+        WeatherService service = sdkFactory.createSDK(apiKey);
+        return service.getRenderedWeatherAsync(city)
+                .thenApply(this::weatherResponse)
+                .exceptionally(e -> errorResponse(city, e instanceof CompletionException ? e.getCause() : e));
+    }
+
+    /**
+     * Retrieves current weather data for a list of cities in one request.
+     * Duplicate names are collapsed, and each city gets its own result with either
+     * weather data or an error, so one bad city does not fail the whole batch.
+     *
+     * @param cities Names of the cities to get weather for
+     * @return Future of a ResponseEntity containing one result per distinct city,
+     *         or BAD_REQUEST if the list is empty or too long
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<CityWeatherDTO>>> getWeatherBatch(@RequestBody List<String> cities) {
+        if (cities == null || cities.isEmpty() || cities.size() > config.getBatchMaxCities()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+        }
+        WeatherService service = sdkFactory.createSDK(apiKey);
+        return batchService.getWeatherData(service, cities)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the observations of a city recorded within a time window, for trend charts.
+     * Only observations this service fetched are returned; no upstream call is made.
+     *
+     * @param city Name of the city
+     * @param from Earliest observation time in epoch seconds, inclusive; unbounded if omitted
+     * @param to Latest observation time in epoch seconds, inclusive; unbounded if omitted
+     * @return ResponseEntity containing the observations oldest first, or NOT_FOUND if the city has no history
+     */
+    @GetMapping("/history")
+    public ResponseEntity<WeatherHistoryDTO> getWeatherHistory(@RequestParam String city,
+                                                               @RequestParam(required = false) Long from,
+                                                               @RequestParam(required = false) Long to) {
+        WeatherService service = sdkFactory.createSDK(apiKey);
+        WeatherHistoryDTO history = service.getWeatherHistory(city,
+            from != null ? from : Long.MIN_VALUE, to != null ? to : Long.MAX_VALUE);
+        if (history == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(history);
+    }
+
+    /**
+     * Conditional requests are evaluated by Spring MVC against the ETag set here.
+     */
+    private ResponseEntity<byte[]> weatherResponse(RenderedWeather weather) {
+        long maxAge = weather.maxAgeSeconds(System.currentTimeMillis());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(weather.etag())
+                .cacheControl(maxAge > 0 ? CacheControl.maxAge(Duration.ofSeconds(maxAge)) : CacheControl.noCache());
+        if (weather.stale()) {
+            response.header(STALE_HEADER, "true");
+        }
+        return response.body(weather.json());
+    }
+
+    private ResponseEntity<byte[]> errorResponse(String city, Throwable e) {
+        if (e instanceof RateLimitExceededException) {
+            log.warn("Rate limit exceeded getting weather data for city: {}", city);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(null);
+        }
+        if (e instanceof CircuitOpenException) {
+            log.warn("Upstream unavailable getting weather data for city: {}", city);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(null);
+        }
+        if (e instanceof WeatherApiException) {
             log.error("Error getting weather data: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(null);
         }
+        throw e instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(e);
     }
 }
@@ -1,5 +1,7 @@
 package com.sokolovsky.WeatherApp.controller;
 
+import com.sokolovsky.WeatherApp.exception.CircuitOpenException;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
 import com.sokolovsky.WeatherApp.exception.WeatherApiException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -29,6 +31,32 @@ public class WeatherExceptionHandler {
                 .body("City name is required");
     }
 
+    /**
+     * Handles an exhausted upstream rate limit.
+     *
+     * @param ex The exception raised when no upstream call is allowed
+     * @return ResponseEntity with TOO_MANY_REQUESTS status and error message
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> handleRateLimitExceeded(RateLimitExceededException ex) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Handles upstream calls rejected by an open circuit breaker when no stale data is available.
+     *
+     * @param ex The exception raised when the upstream API is considered unavailable
+     * @return ResponseEntity with SERVICE_UNAVAILABLE status and error message
+     */
+    @ExceptionHandler(CircuitOpenException.class)
+    public ResponseEntity<String> handleCircuitOpen(CircuitOpenException ex) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ex.getMessage());
+    }
+
     /**
      * Handles Weather API specific exceptions.
      * Triggered for invalid cities, API errors, or parsing failures.
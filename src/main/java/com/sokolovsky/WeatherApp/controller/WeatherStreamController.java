@@ -0,0 +1,310 @@
+package com.sokolovsky.WeatherApp.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.dto.CityWeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
+import com.sokolovsky.WeatherApp.service.WeatherService;
+import com.sokolovsky.WeatherApp.service.WeatherUpdateListener;
+import com.sokolovsky.WeatherApp.service.impl.VirtualThreads;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * REST Controller streaming weather updates to subscribers as Server-Sent Events.
+ * A subscriber first gets the current weather of each of its cities, then a new event
+ * whenever a fetch or poll changed a city's weather. Idle streams hold no thread;
+ * updates are written by a small shared pool, or by virtual threads when enabled, so slow
+ * clients do not stall the poller. Each stream keeps at most one pending event per city,
+ * newer updates replacing unsent ones, and is written by one send task at a time, so a slow
+ * client holds at most one thread. A stream whose send takes longer than the send timeout is
+ * dropped and completed once the write returns.
+ * Each update is serialized once, as single-line JSON, for all subscribers of its city.
+ */
+@RestController
+@RequestMapping("/weather")
+public class WeatherStreamController {
+    private static final Logger log = LoggerFactory.getLogger(WeatherStreamController.class);
+    private static final String EVENT_NAME = "weather";
+
+    private final WeatherSDKFactory sdkFactory;
+    private final WeatherConfig config;
+    private final ObjectWriter eventWriter;
+    private final String apiKey;
+    private final ExecutorService sendExecutor;
+    private final ScheduledExecutorService sendTimeouts;
+    private final Duration sendTimeout;
+    private final Map<String, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Subscription> open = ConcurrentHashMap.newKeySet();
+    private final WeatherUpdateListener updateListener = this::onUpdate;
+
+    /**
+     * @param sdkFactory Factory for creating WeatherService instances
+     * @param config Weather configuration with the stream limits
+     * @param objectMapper Mapper serializing the events
+     * @param apiKey OpenWeather API key for authentication
+     */
+    public WeatherStreamController(WeatherSDKFactory sdkFactory,
+                                   WeatherConfig config,
+                                   ObjectMapper objectMapper,
+                                   String apiKey) {
+        this.sdkFactory = sdkFactory;
+        this.config = config;
+        this.eventWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.apiKey = apiKey;
+        this.sendExecutor = VirtualThreads.isEnabled(config.isVirtualThreads())
+            ? VirtualThreads.newThreadPerTaskExecutor("weather-stream-", true)
+            : Executors.newFixedThreadPool(Math.max(1, config.getStreamThreads()),
+                VirtualThreads.factory("weather-stream-", false));
+        this.sendTimeouts = Executors.newSingleThreadScheduledExecutor(
+            VirtualThreads.factory("weather-stream-timeout-", false));
+        this.sendTimeout = config.getStreamSendTimeout();
+        sdkFactory.addUpdateListener(apiKey, updateListener);
+    }
+
+    /**
+     * Subscribes to weather updates for the given cities.
+     *
+     * @param cities Names of the cities to get updates for
+     * @return Event stream, or BAD_REQUEST if no or too many cities are given
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamWeather(@RequestParam List<String> cities) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String city : cities) {
+            if (!city.isBlank()) {
+                distinct.add(city.trim());
+            }
+        }
+        if (distinct.isEmpty() || distinct.size() > config.getStreamMaxCities()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+
+        WeatherService service = sdkFactory.createSDK(apiKey);
+
+        Duration timeout = config.getStreamTimeout();
+        SseEmitter emitter = new SseEmitter(timeout == null || timeout.isZero() ? -1L : timeout.toMillis());
+        Subscription subscription = new Subscription(emitter, distinct);
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(subscription));
+        open.add(subscription);
+        for (String city : distinct) {
+            subscribers.compute(city, (k, subs) -> {
+                Set<Subscription> citySubscribers = subs != null ? subs : ConcurrentHashMap.newKeySet();
+                citySubscribers.add(subscription);
+                return citySubscribers;
+            });
+            service.getWeatherDataAsync(city).whenComplete((weather, e) -> {
+                if (weather != null) {
+                    dispatch(Set.of(subscription), city, weather);
+                } else {
+                    log.debug("Initial weather data for streamed city {} not available: {}", city, e.getMessage());
+                }
+            });
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Returns the number of open update streams.
+     *
+     * @return Number of subscribers
+     */
+    public int getSubscriberCount() {
+        return open.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sdkFactory.removeUpdateListener(apiKey, updateListener);
+        sendExecutor.shutdownNow();
+        sendTimeouts.shutdownNow();
+        open.forEach(subscription -> subscription.emitter.complete());
+        open.clear();
+        subscribers.clear();
+    }
+
+    private void onUpdate(String city, WeatherDTO weather) {
+        Set<Subscription> citySubscribers = subscribers.get(city);
+        if (citySubscribers != null) {
+            dispatch(citySubscribers, city, weather);
+        }
+    }
+
+    private void dispatch(Set<Subscription> targets, String city, WeatherDTO weather) {
+        try {
+            sendExecutor.execute(() -> {
+                String json;
+                try {
+                    json = eventWriter.writeValueAsString(CityWeatherDTO.success(city, weather));
+                } catch (JsonProcessingException e) {
+                    log.error("Failed to serialize weather update for city: {}", city, e);
+                    return;
+                }
+                for (Subscription subscription : targets) {
+                    subscription.offer(city, weather, json);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Update for city {} dropped, stream executor is shut down", city);
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        open.remove(subscription);
+        for (String city : subscription.cities) {
+            subscribers.computeIfPresent(city, (k, subs) -> {
+                subs.remove(subscription);
+                return subs.isEmpty() ? null : subs;
+            });
+        }
+    }
+
+    private void timeOut(Subscription subscription) {
+        log.debug("Dropping weather stream, sending an update took longer than {}", sendTimeout);
+        unsubscribe(subscription);
+    }
+
+    /**
+     * One open stream with its pending event per city and the last weather sent per city, so unchanged
+     * data is never sent twice. Only one drain task sends at a time, so events never interleave.
+     */
+    private final class Subscription {
+        private final SseEmitter emitter;
+        private final Set<String> cities;
+        private final Map<String, WeatherDTO> lastSent = new ConcurrentHashMap<>();
+        private final Map<String, Event> pending = new LinkedHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean draining;
+        private volatile boolean timedOut;
+
+        Subscription(SseEmitter emitter, Set<String> cities) {
+            this.emitter = emitter;
+            this.cities = cities;
+        }
+
+        /**
+         * Queues an event, replacing an unsent one of the same city, and starts a drain task if none runs.
+         */
+        void offer(String city, WeatherDTO weather, String json) {
+            lock.lock();
+            try {
+                if (timedOut) {
+                    return;
+                }
+                pending.put(city, new Event(city, weather, json));
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sendExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("Update for city {} dropped, stream executor is shut down", city);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Event event;
+                lock.lock();
+                try {
+                    Iterator<Event> events = pending.values().iterator();
+                    if (timedOut || !events.hasNext()) {
+                        draining = false;
+                        return;
+                    }
+                    event = events.next();
+                    events.remove();
+                } finally {
+                    lock.unlock();
+                }
+                if (!send(event)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean send(Event event) {
+            if (event.weather.equals(lastSent.get(event.city))) {
+                return true;
+            }
+            ScheduledFuture<?> timeout = sendTimeout == null || sendTimeout.isZero() ? null : scheduleTimeout();
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(EVENT_NAME)
+                        .data(event.json));
+                lastSent.put(event.city, event.weather);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Closing weather stream after failed send: {}", e.getMessage());
+                emitter.completeWithError(e);
+                return false;
+            } finally {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+            }
+            if (timedOut) {
+                emitter.completeWithError(
+                    new TimeoutException("Sending a weather update took longer than " + sendTimeout));
+                return false;
+            }
+            return true;
+        }
+
+        private ScheduledFuture<?> scheduleTimeout() {
+            try {
+                return sendTimeouts.schedule(() -> {
+                    lock.lock();
+                    try {
+                        timedOut = true;
+                        pending.clear();
+                    } finally {
+                        lock.unlock();
+                    }
+                    timeOut(this);
+                }, sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Event(String city, WeatherDTO weather, String json) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.sokolovsky.WeatherApp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Result for one city of a batch request: either its weather data or the error it failed with.
+ * Expired data served because upstream is unavailable is marked stale.
+ */
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({
+    "city",
+    "status",
+    "weather",
+    "stale",
+    "error"
+})
+public class CityWeatherDTO {
+    private String city;
+    private int status;
+    private WeatherDTO weather;
+    private Boolean stale;
+    private String error;
+
+    public static CityWeatherDTO success(String city, WeatherDTO weather) {
+        return success(city, weather, false);
+    }
+
+    public static CityWeatherDTO success(String city, WeatherDTO weather, boolean stale) {
+        CityWeatherDTO result = new CityWeatherDTO();
+        result.setCity(city);
+        result.setStatus(200);
+        result.setWeather(weather);
+        result.setStale(stale ? Boolean.TRUE : null);
+        return result;
+    }
+
+    public static CityWeatherDTO failure(String city, int status, String error) {
+        CityWeatherDTO result = new CityWeatherDTO();
+        result.setCity(city);
+        result.setStatus(status);
+        result.setError(error);
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sokolovsky.WeatherApp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Coordinates of a city as two primitive doubles, for caching instead of a {@link GeocodingDTO}
+ * with its {@link BigDecimal} fields and names.
+ *
+ * @param lat Latitude
+ * @param lon Longitude
+ */
+public record Coordinates(double lat, double lon) {
+
+    public static Coordinates of(GeocodingDTO location) {
+        return new Coordinates(location.getLat().doubleValue(), location.getLon().doubleValue());
+    }
+
+    /**
+     * Formats the latitude for a query string, never in scientific notation.
+     */
+    public String latParam() {
+        return BigDecimal.valueOf(lat).toPlainString();
+    }
+
+    /**
+     * Formats the longitude for a query string, never in scientific notation.
+     */
+    public String lonParam() {
+        return BigDecimal.valueOf(lon).toPlainString();
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -13,6 +14,7 @@ import java.util.List;
 @Getter
 @Setter
 @ToString
+@EqualsAndHashCode
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonPropertyOrder({
     "weather",
@@ -64,6 +66,7 @@ public class WeatherDTO {
     @Getter
     @Setter
     @ToString
+    @EqualsAndHashCode
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Weather {
         private String main;
@@ -73,6 +76,7 @@ public class WeatherDTO {
     @Getter
     @Setter
     @ToString
+    @EqualsAndHashCode
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Main {
         private Double temp;
@@ -84,6 +88,7 @@ public class WeatherDTO {
     @Getter
     @Setter
     @ToString
+    @EqualsAndHashCode
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Wind {
         private Double speed;
@@ -92,6 +97,7 @@ public class WeatherDTO {
     @Getter
     @Setter
     @ToString
+    @EqualsAndHashCode
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Sys {
         private Long sunrise;
@@ -0,0 +1,28 @@
+package com.sokolovsky.WeatherApp.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Observations of one city in a time window, oldest first, as one array per field
+ * so a series can be plotted without regrouping points. The arrays have equal length.
+ */
+@JsonPropertyOrder({
+    "city",
+    "datetime",
+    "temp",
+    "feels_like",
+    "wind_speed",
+    "visibility"
+})
+public record WeatherHistoryDTO(String city,
+                                long[] datetime,
+                                double[] temp,
+                                @JsonProperty("feels_like") double[] feelsLike,
+                                @JsonProperty("wind_speed") double[] windSpeed,
+                                int[] visibility) {
+
+    public int size() {
+        return datetime.length;
+    }
+}
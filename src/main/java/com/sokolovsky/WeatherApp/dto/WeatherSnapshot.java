@@ -0,0 +1,221 @@
+package com.sokolovsky.WeatherApp.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable flat copy of a {@link WeatherDTO} for caching: one object with primitive fields
+ * instead of the DTO with its nested objects, boxed numbers and weather list.
+ * The first weather condition, the only one served as JSON, is kept in its own fields and any
+ * further ones in a pair array, which is null for the usual single condition. Condition strings
+ * repeat across cities and are interned. Which of the nullable DTO fields were set is kept
+ * in a bit mask, so {@link #toDto()} gives back an equal DTO.
+ *
+ * @param otherConditions Main and description of every condition after the first, in turn, or null
+ */
+public record WeatherSnapshot(String condition,
+                              String description,
+                              double temp,
+                              double feelsLike,
+                              int visibility,
+                              double windSpeed,
+                              long datetime,
+                              long sunrise,
+                              long sunset,
+                              int timezone,
+                              String name,
+                              short present,
+                              String[] otherConditions) {
+    private static final int MAX_INTERNED = 1024;
+    private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    private static final short WEATHER = 1;
+    private static final short MAIN = 1 << 1;
+    private static final short TEMP = 1 << 2;
+    private static final short FEELS_LIKE = 1 << 3;
+    private static final short VISIBILITY = 1 << 4;
+    private static final short WIND = 1 << 5;
+    private static final short WIND_SPEED = 1 << 6;
+    private static final short DATETIME = 1 << 7;
+    private static final short SYS = 1 << 8;
+    private static final short SUNRISE = 1 << 9;
+    private static final short SUNSET = 1 << 10;
+    private static final short TIMEZONE = 1 << 11;
+
+    public WeatherSnapshot(String condition, String description, double temp, double feelsLike, int visibility,
+                           double windSpeed, long datetime, long sunrise, long sunset, int timezone, String name,
+                           short present) {
+        this(condition, description, temp, feelsLike, visibility, windSpeed, datetime, sunrise, sunset, timezone,
+            name, present, null);
+    }
+
+    /**
+     * Creates a snapshot of the given weather data.
+     *
+     * @param weather Weather data as received from the API
+     * @return Snapshot of the weather data
+     */
+    public static WeatherSnapshot of(WeatherDTO weather) {
+        int present = 0;
+        WeatherDTO.Weather condition = weather.getWeather();
+        WeatherDTO.Main main = weather.getMain();
+        WeatherDTO.Wind wind = weather.getWind();
+        WeatherDTO.Sys sys = weather.getSys();
+        present |= flag(condition, WEATHER) | flag(main, MAIN) | flag(wind, WIND) | flag(sys, SYS);
+        present |= flag(weather.getVisibility(), VISIBILITY) | flag(weather.getDatetime(), DATETIME)
+                | flag(weather.getTimezone(), TIMEZONE);
+        if (main != null) {
+            present |= flag(main.getTemp(), TEMP) | flag(main.getFeelsLike(), FEELS_LIKE);
+        }
+        if (wind != null) {
+            present |= flag(wind.getSpeed(), WIND_SPEED);
+        }
+        if (sys != null) {
+            present |= flag(sys.getSunrise(), SUNRISE) | flag(sys.getSunset(), SUNSET);
+        }
+        return new WeatherSnapshot(
+            condition != null ? intern(condition.getMain()) : null,
+            condition != null ? intern(condition.getDescription()) : null,
+            main != null && main.getTemp() != null ? main.getTemp() : 0,
+            main != null && main.getFeelsLike() != null ? main.getFeelsLike() : 0,
+            weather.getVisibility() != null ? weather.getVisibility() : 0,
+            wind != null && wind.getSpeed() != null ? wind.getSpeed() : 0,
+            weather.getDatetime() != null ? weather.getDatetime() : 0,
+            sys != null && sys.getSunrise() != null ? sys.getSunrise() : 0,
+            sys != null && sys.getSunset() != null ? sys.getSunset() : 0,
+            weather.getTimezone() != null ? weather.getTimezone() : 0,
+            weather.getName(),
+            (short) present,
+            otherConditions(weather.getWeatherList()));
+    }
+
+    private static String[] otherConditions(List<WeatherDTO.Weather> conditions) {
+        if (conditions == null || conditions.size() < 2) {
+            return null;
+        }
+        String[] others = new String[2 * (conditions.size() - 1)];
+        for (int i = 1; i < conditions.size(); i++) {
+            WeatherDTO.Weather condition = conditions.get(i);
+            others[2 * i - 2] = condition != null ? intern(condition.getMain()) : null;
+            others[2 * i - 1] = condition != null ? intern(condition.getDescription()) : null;
+        }
+        return others;
+    }
+
+    /**
+     * Creates a new DTO with the data of this snapshot.
+     *
+     * @return Weather data, owned by the caller
+     */
+    public WeatherDTO toDto() {
+        WeatherDTO weather = new WeatherDTO();
+        if (has(WEATHER)) {
+            List<WeatherDTO.Weather> conditions = new ArrayList<>(
+                1 + (otherConditions != null ? otherConditions.length / 2 : 0));
+            conditions.add(condition(this.condition, description));
+            if (otherConditions != null) {
+                for (int i = 0; i < otherConditions.length; i += 2) {
+                    conditions.add(condition(otherConditions[i], otherConditions[i + 1]));
+                }
+            }
+            weather.setWeatherList(conditions);
+        }
+        if (has(MAIN)) {
+            WeatherDTO.Main main = new WeatherDTO.Main();
+            main.setTemp(has(TEMP) ? temp : null);
+            main.setFeelsLike(has(FEELS_LIKE) ? feelsLike : null);
+            weather.setMain(main);
+        }
+        weather.setVisibility(has(VISIBILITY) ? visibility : null);
+        if (has(WIND)) {
+            WeatherDTO.Wind wind = new WeatherDTO.Wind();
+            wind.setSpeed(has(WIND_SPEED) ? windSpeed : null);
+            weather.setWind(wind);
+        }
+        weather.setDt(has(DATETIME) ? datetime : null);
+        if (has(SYS)) {
+            WeatherDTO.Sys sys = new WeatherDTO.Sys();
+            sys.setSunrise(has(SUNRISE) ? sunrise : null);
+            sys.setSunset(has(SUNSET) ? sunset : null);
+            weather.setSys(sys);
+        }
+        weather.setTimezone(has(TIMEZONE) ? timezone : null);
+        weather.setName(name);
+        return weather;
+    }
+
+    private static WeatherDTO.Weather condition(String main, String description) {
+        WeatherDTO.Weather condition = new WeatherDTO.Weather();
+        condition.setMain(main);
+        condition.setDescription(description);
+        return condition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof WeatherSnapshot other
+                && Double.compare(temp, other.temp) == 0
+                && Double.compare(feelsLike, other.feelsLike) == 0
+                && visibility == other.visibility
+                && Double.compare(windSpeed, other.windSpeed) == 0
+                && datetime == other.datetime
+                && sunrise == other.sunrise
+                && sunset == other.sunset
+                && timezone == other.timezone
+                && present == other.present
+                && Objects.equals(condition, other.condition)
+                && Objects.equals(description, other.description)
+                && Objects.equals(name, other.name)
+                && Arrays.equals(otherConditions, other.otherConditions);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(condition, description, temp, feelsLike, visibility, windSpeed, datetime,
+            sunrise, sunset, timezone, name, present);
+        return 31 * result + Arrays.hashCode(otherConditions);
+    }
+
+    @Override
+    public String toString() {
+        return "WeatherSnapshot[condition=" + condition + ", description=" + description + ", temp=" + temp
+                + ", feelsLike=" + feelsLike + ", visibility=" + visibility + ", windSpeed=" + windSpeed
+                + ", datetime=" + datetime + ", sunrise=" + sunrise + ", sunset=" + sunset
+                + ", timezone=" + timezone + ", name=" + name + ", present=" + present
+                + ", otherConditions=" + Arrays.toString(otherConditions) + "]";
+    }
+
+    private boolean has(short field) {
+        return (present & field) != 0;
+    }
+
+    private static int flag(Object value, short field) {
+        return value != null ? field : 0;
+    }
+
+    /**
+     * Interns condition strings, of which the API has a small fixed set.
+     * Stops interning new values once the table is full.
+     *
+     * @param value Condition or description, may be null
+     * @return Shared instance equal to the value
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String interned = INTERNED.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return value;
+        }
+        interned = INTERNED.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+}
@@ -0,0 +1,7 @@
+package com.sokolovsky.WeatherApp.exception;
+
+public class CircuitOpenException extends WeatherApiException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.sokolovsky.WeatherApp.exception;
+
+public class RateLimitExceededException extends WeatherApiException {
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
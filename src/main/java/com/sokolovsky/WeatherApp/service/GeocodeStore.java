@@ -0,0 +1,12 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
+
+import java.util.Optional;
+
+public interface GeocodeStore {
+    Optional<GeocodingDTO> find(String city);
+    void save(String city, GeocodingDTO location);
+    void compact();
+    int size();
+}
@@ -0,0 +1,56 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+
+/**
+ * Cached weather of a city together with its response rendered once at fetch time,
+ * so cache hits can be written out without serializing the DTO again.
+ * The JSON bytes are shared between all readers and must not be modified.
+ *
+ * @param snapshot Weather data
+ * @param json Compact JSON rendering of the weather data
+ * @param etag Strong entity tag of the rendering, quoted
+ * @param fetchedAtMillis When the data was fetched upstream, epoch milliseconds
+ * @param expiresAtMillis Until when clients may reuse the data, epoch milliseconds, 0 if unknown
+ * @param stale Whether the data is served past its expiry because upstream could not be called
+ */
+public record RenderedWeather(WeatherSnapshot snapshot,
+                              byte[] json,
+                              String etag,
+                              long fetchedAtMillis,
+                              long expiresAtMillis,
+                              boolean stale) {
+
+    public RenderedWeather(WeatherSnapshot snapshot, byte[] json, String etag, long fetchedAtMillis, long expiresAtMillis) {
+        this(snapshot, json, etag, fetchedAtMillis, expiresAtMillis, false);
+    }
+
+    /**
+     * Returns a copy of this weather marked as stale and already expired for clients.
+     *
+     * @return Stale copy sharing the rendering of this weather
+     */
+    public RenderedWeather asStale() {
+        return new RenderedWeather(snapshot, json, etag, fetchedAtMillis, 0, true);
+    }
+
+    /**
+     * Returns the weather data as a new DTO.
+     *
+     * @return Weather data, owned by the caller
+     */
+    public WeatherDTO weather() {
+        return snapshot.toDto();
+    }
+
+    /**
+     * Returns how many whole seconds clients may still reuse the data.
+     *
+     * @param nowMillis Current time, epoch milliseconds
+     * @return Remaining seconds, 0 if expired or unknown
+     */
+    public long maxAgeSeconds(long nowMillis) {
+        return expiresAtMillis > nowMillis ? (expiresAtMillis - nowMillis) / 1000 : 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.CityWeatherDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface WeatherBatchService {
+    CompletableFuture<List<CityWeatherDTO>> getWeatherData(WeatherService service, Collection<String> cities);
+}
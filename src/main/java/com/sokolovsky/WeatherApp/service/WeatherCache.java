@@ -0,0 +1,16 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+public interface WeatherCache {
+    RenderedWeather getIfPresent(String city);
+    RenderedWeather peek(String city);
+    RenderedWeather put(String city, RenderedWeather weather);
+    Set<String> cities();
+    void forEach(BiConsumer<String, RenderedWeather> action);
+    void invalidateAll();
+    CacheStats stats();
+}
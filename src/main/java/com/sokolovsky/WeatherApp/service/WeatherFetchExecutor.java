@@ -0,0 +1,5 @@
+package com.sokolovsky.WeatherApp.service;
+
+public interface WeatherFetchExecutor {
+    void execute(Runnable task);
+}
@@ -0,0 +1,13 @@
+package com.sokolovsky.WeatherApp.service;
+
+import java.util.concurrent.TimeUnit;
+
+public interface WeatherRefreshScheduler {
+    Registration register();
+
+    interface Registration {
+        void schedule(Runnable task, long delay, TimeUnit unit);
+        void cancel();
+        boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+    }
+}
@@ -3,4 +3,6 @@ package com.sokolovsky.WeatherApp.service;
 public interface WeatherSDKFactory {
     WeatherService createSDK(String apiKey);
     void destroySDK(String apiKey);
-} 
\ No newline at end of file
+    void addUpdateListener(String apiKey, WeatherUpdateListener listener);
+    void removeUpdateListener(String apiKey, WeatherUpdateListener listener);
+}
@@ -1,12 +1,19 @@
 package com.sokolovsky.WeatherApp.service;
 
 import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherHistoryDTO;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface WeatherService {
     WeatherDTO getWeatherData(String city);
+    CompletableFuture<WeatherDTO> getWeatherDataAsync(String city);
+    CompletableFuture<RenderedWeather> getRenderedWeatherAsync(String city);
     void shutdown();
     Set<String> getCachedCities();
+    WeatherHistoryDTO getWeatherHistory(String city, long fromSeconds, long toSeconds);
     void updateWeatherData(String city);
+    void addUpdateListener(WeatherUpdateListener listener);
+    void removeUpdateListener(WeatherUpdateListener listener);
 }
@@ -0,0 +1,8 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+
+@FunctionalInterface
+public interface WeatherUpdateListener {
+    void onUpdate(String city, WeatherDTO weather);
+}
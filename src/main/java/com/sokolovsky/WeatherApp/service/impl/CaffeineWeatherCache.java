@@ -0,0 +1,52 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Weather cache kept on the heap in a Caffeine cache, which handles eviction, expiry
+ * and refresh-ahead as configured when it was built.
+ */
+public class CaffeineWeatherCache implements WeatherCache {
+    private final Cache<String, RenderedWeather> cache;
+
+    public CaffeineWeatherCache(Cache<String, RenderedWeather> cache) {
+        this.cache = cache;
+    }
+
+    public RenderedWeather getIfPresent(String city) {
+        return cache.getIfPresent(city);
+    }
+
+    /**
+     * Reads an entry without recording a hit or a miss.
+     */
+    public RenderedWeather peek(String city) {
+        return cache.asMap().get(city);
+    }
+
+    public RenderedWeather put(String city, RenderedWeather weather) {
+        return cache.asMap().put(city, weather);
+    }
+
+    public Set<String> cities() {
+        return cache.asMap().keySet();
+    }
+
+    public void forEach(BiConsumer<String, RenderedWeather> action) {
+        cache.asMap().forEach(action);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,159 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks how often each city is requested and decides which cities are worth refreshing.
+ * Every access adds one to an exponentially decaying per-city score. A fixed budget of
+ * refreshes per tick is shared between cities in proportion to their scores, so hot
+ * cities are refreshed up to every tick. Every city expected to be requested again before
+ * its entry expires is refreshed at least once per maximum interval, which keeps it cached
+ * for roughly the cost of the miss it would otherwise cause. Cold cities are left to expire.
+ */
+public class CityPopularityTracker {
+    private static final double COLD_SCORE = 0.05;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final double decayPerNano;
+    private final long maxIntervalNanos;
+    private final double coldScore;
+    private final LongSupplier clock;
+
+    /**
+     * @param halfLife Time after which an access counts half as much
+     * @param maxInterval Longest time between two refreshes of a city worth keeping,
+     *                    typically a bit less than the cache TTL
+     */
+    public CityPopularityTracker(Duration halfLife, Duration maxInterval) {
+        this(halfLife, maxInterval, System::nanoTime);
+    }
+
+    /**
+     * @param halfLife Time after which an access counts half as much
+     * @param maxInterval Longest time between two refreshes of a city worth keeping,
+     *                    typically a bit less than the cache TTL
+     * @param clock Source of nanosecond timestamps
+     */
+    public CityPopularityTracker(Duration halfLife, Duration maxInterval, LongSupplier clock) {
+        this.decayPerNano = Math.log(2) / Math.max(1, halfLife.toNanos());
+        this.maxIntervalNanos = Math.max(1, maxInterval.toNanos());
+        // A steady rate of r requests per nanosecond settles at a score of r / decayPerNano, so
+        // below this score a city is expected to get less than one request per maximum interval.
+        this.coldScore = Math.max(COLD_SCORE, 1 / (decayPerNano * maxIntervalNanos));
+        this.clock = clock;
+    }
+
+    public void recordAccess(String city) {
+        long now = clock.getAsLong();
+        entries.computeIfAbsent(city, k -> new Entry(now)).hit(now);
+    }
+
+    public void recordRefresh(String city) {
+        long now = clock.getAsLong();
+        entries.computeIfAbsent(city, k -> new Entry(now)).refreshedAt(now);
+    }
+
+    public void forget(String city) {
+        entries.remove(city);
+    }
+
+    public double score(String city) {
+        Entry entry = entries.get(city);
+        return entry == null ? 0 : entry.scoreAt(clock.getAsLong());
+    }
+
+    /**
+     * Selects the cities to refresh in the current tick.
+     * A city with share {@code s} of the total score is due every {@code 1 / (budget * s)} ticks,
+     * but at most once per tick and at least once per maximum interval; budget left over by
+     * the per-tick cap goes to the less popular cities. Cold cities are never due. When more
+     * cities are due than the budget allows, cities about to reach the maximum interval go
+     * first, then the most popular ones.
+     *
+     * @param cities Cities currently cached
+     * @param budget Maximum number of refreshes per tick
+     * @param tick Time between two selections
+     * @return Cities to refresh, most popular first
+     */
+    public List<String> selectDue(Collection<String> cities, int budget, Duration tick) {
+        long now = clock.getAsLong();
+        long tickNanos = tick.toNanos();
+        List<Candidate> candidates = new ArrayList<>();
+        double totalScore = 0;
+        for (String city : cities) {
+            Entry entry = entries.get(city);
+            if (entry == null) {
+                continue;
+            }
+            double score = entry.scoreAt(now);
+            if (score < coldScore) {
+                continue;
+            }
+            totalScore += score;
+            candidates.add(new Candidate(city, score, entry.lastRefresh()));
+        }
+
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        List<Candidate> due = new ArrayList<>();
+        double remainingBudget = budget;
+        double remainingScore = totalScore;
+        for (Candidate candidate : candidates) {
+            double refreshesPerTick = remainingBudget * candidate.score() / remainingScore;
+            long interval;
+            if (refreshesPerTick >= 1) {
+                interval = tickNanos;
+                remainingBudget -= 1;
+                remainingScore -= candidate.score();
+            } else {
+                interval = (long) Math.min(maxIntervalNanos, tickNanos / refreshesPerTick);
+            }
+            long age = now - candidate.lastRefresh();
+            if (age >= interval - tickNanos / 2) {
+                due.add(candidate);
+            }
+        }
+        return due.stream()
+                .sorted(Comparator.comparing((Candidate c) -> now - c.lastRefresh() < maxIntervalNanos - tickNanos / 2))
+                .limit(budget)
+                .map(Candidate::city)
+                .toList();
+    }
+
+    private record Candidate(String city, double score, long lastRefresh) {
+    }
+
+    private final class Entry {
+        private double score;
+        private long updated;
+        private long lastRefresh;
+
+        Entry(long now) {
+            this.updated = now;
+            this.lastRefresh = now;
+        }
+
+        synchronized void hit(long now) {
+            score = scoreAt(now) + 1;
+            updated = now;
+        }
+
+        synchronized void refreshedAt(long now) {
+            lastRefresh = now;
+        }
+
+        synchronized double scoreAt(long now) {
+            return score * Math.exp(-decayPerNano * (now - updated));
+        }
+
+        synchronized long lastRefresh() {
+            return lastRefresh;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache statistics counter that also counts evictions per cause, which {@link CacheStats}
+ * only reports as a total. Used by both cache backends, so their evictions can be told apart
+ * by whether the entry expired or was pushed out of a full cache.
+ */
+public class EvictionStatsCounter implements StatsCounter {
+    private final StatsCounter delegate = new ConcurrentStatsCounter();
+    private final LongAdder[] evictions = new LongAdder[RemovalCause.values().length];
+
+    public EvictionStatsCounter() {
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordHits(int count) {
+        delegate.recordHits(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        delegate.recordMisses(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        delegate.recordLoadSuccess(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        delegate.recordLoadFailure(loadTime);
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        delegate.recordEviction(weight, cause);
+        evictions[cause.ordinal()].increment();
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return delegate.snapshot();
+    }
+
+    /**
+     * Returns the number of entries evicted for the given cause.
+     */
+    public long getEvictionCount(RemovalCause cause) {
+        return evictions[cause.ordinal()].sum();
+    }
+}
@@ -0,0 +1,295 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
+import com.sokolovsky.WeatherApp.service.GeocodeStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Geocode store backed by an append-only binary log.
+ * Every resolved location is appended as a length-prefixed record and the whole log is
+ * replayed into memory at startup, so geocode lookups are warm from the first request.
+ * The number of kept entries is bounded; once the log holds more than twice as many
+ * records as live entries it is compacted into a fresh file.
+ * A blank path disables the store. Access to the entries and the log is serialized with one lock.
+ */
+@Component
+@Slf4j
+public class FileGeocodeStore implements GeocodeStore {
+    private static final int MAGIC = 0x47454f31; // "GEO1"
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+    // Longest record writeRecord can produce: the city and three nullable strings of at most
+    // 65535 UTF-8 bytes each, plus two coordinates
+    private static final int MAX_RECORD = (2 + 65535) + 3 * (1 + 2 + 65535) + 2 * 8;
+
+    private final Path file;
+    private final Map<String, GeocodingDTO> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private DataOutputStream out;
+    private long records;
+
+    @Autowired
+    public FileGeocodeStore(WeatherConfig config) {
+        this(config.getGeoStorePath() == null || config.getGeoStorePath().isBlank()
+                ? null : Path.of(config.getGeoStorePath()),
+            config.getGeoStoreMaxEntries());
+    }
+
+    /**
+     * Creates the store and loads all entries from the given file.
+     *
+     * @param file Log file, or null to disable persistence
+     * @param maxEntries Maximum number of kept entries, 0 for no bound
+     */
+    public FileGeocodeStore(Path file, long maxEntries) {
+        this.file = file;
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeocodingDTO> eldest) {
+                return maxEntries > 0 && size() > maxEntries;
+            }
+        };
+        if (file != null) {
+            load();
+        }
+    }
+
+    public Optional<GeocodingDTO> find(String city) {
+        lock.lock();
+        try {
+            return Optional.ofNullable(entries.get(city));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the location of a city and appends it to the log.
+     * Write failures are logged and do not affect the caller.
+     *
+     * @param city Name of the city
+     * @param location Resolved location
+     */
+    public void save(String city, GeocodingDTO location) {
+        lock.lock();
+        try {
+            if (out == null) {
+                return;
+            }
+            entries.put(city, location);
+            try {
+                writeRecord(out, city, location);
+                out.flush();
+                records++;
+            } catch (IOException e) {
+                log.warn("Failed to append to geocode store {}", file, e);
+            }
+            if (records >= MIN_COMPACTION_RECORDS && records > 2L * entries.size()) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log so that it only holds the live entries.
+     */
+    public void compact() {
+        lock.lock();
+        try {
+            if (file == null) {
+                return;
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                closeOutput();
+                try (DataOutputStream tmpOut = openOutput(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    tmpOut.writeInt(MAGIC);
+                    for (Map.Entry<String, GeocodingDTO> entry : entries.entrySet()) {
+                        writeRecord(tmpOut, entry.getKey(), entry.getValue());
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                records = entries.size();
+                out = openOutput(file, StandardOpenOption.APPEND);
+                log.debug("Compacted geocode store {} to {} entries", file, records);
+            } catch (IOException e) {
+                log.warn("Failed to compact geocode store {}, persistence disabled", file, e);
+                out = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            try {
+                closeOutput();
+            } catch (IOException e) {
+                log.warn("Failed to close geocode store {}", file, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        boolean dirty = !Files.exists(file);
+        if (!dirty) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Unrecognized geocode store format");
+                }
+                dirty = readRecords(in);
+            } catch (IOException e) {
+                log.warn("Failed to load geocode store {}, keeping the {} entries read", file, entries.size(), e);
+                records = entries.size();
+                dirty = true;
+            }
+        }
+        log.info("Loaded {} geocode entries from {} in {} ms",
+            entries.size(), file, (System.nanoTime() - start) / 1_000_000);
+
+        if (dirty || records > entries.size()) {
+            compact();
+        } else {
+            try {
+                out = openOutput(file, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Failed to open geocode store {}, persistence disabled", file, e);
+            }
+        }
+    }
+
+    /**
+     * Replays records into memory. Reading stops at the first damaged record; the entries read
+     * until then are kept and the caller compacts the log, which cuts it at the last good record.
+     *
+     * @return true if the log ended with a truncated, malformed or impossibly long record
+     */
+    private boolean readRecords(DataInputStream in) throws IOException {
+        long offset = Integer.BYTES;
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (length < 0 || length > MAX_RECORD) {
+                log.warn("Ignoring the rest of geocode store {} after a record of invalid length {} at offset {}",
+                    file, length, offset);
+                return true;
+            }
+            byte[] record = new byte[length];
+            try {
+                in.readFully(record);
+            } catch (EOFException e) {
+                log.warn("Ignoring truncated record at the end of geocode store {}", file);
+                return true;
+            }
+            DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+            String city;
+            GeocodingDTO location = new GeocodingDTO();
+            try {
+                city = recordIn.readUTF();
+                location.setName(readNullable(recordIn));
+                location.setLat(readCoordinate(recordIn));
+                location.setLon(readCoordinate(recordIn));
+                location.setCountry(readNullable(recordIn));
+                location.setState(readNullable(recordIn));
+            } catch (IOException e) {
+                log.warn("Ignoring the rest of geocode store {} after a malformed record at offset {}: {}",
+                    file, offset, e.toString());
+                return true;
+            }
+            entries.put(city, location);
+            records++;
+            offset += Integer.BYTES + length;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream target, String city, GeocodingDTO location) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(buffer);
+        recordOut.writeUTF(city);
+        writeNullable(recordOut, location.getName());
+        writeCoordinate(recordOut, location.getLat());
+        writeCoordinate(recordOut, location.getLon());
+        writeNullable(recordOut, location.getCountry());
+        writeNullable(recordOut, location.getState());
+        target.writeInt(buffer.size());
+        buffer.writeTo(target);
+    }
+
+    private static void writeNullable(DataOutputStream target, String value) throws IOException {
+        target.writeBoolean(value != null);
+        if (value != null) {
+            target.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream source) throws IOException {
+        return source.readBoolean() ? source.readUTF() : null;
+    }
+
+    private static void writeCoordinate(DataOutputStream target, BigDecimal value) throws IOException {
+        target.writeDouble(value != null ? value.doubleValue() : Double.NaN);
+    }
+
+    private static BigDecimal readCoordinate(DataInputStream source) throws IOException {
+        double value = source.readDouble();
+        return Double.isNaN(value) ? null : BigDecimal.valueOf(value);
+    }
+
+    private DataOutputStream openOutput(Path path, StandardOpenOption mode) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)));
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+}
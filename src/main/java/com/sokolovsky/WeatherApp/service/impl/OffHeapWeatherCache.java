@@ -0,0 +1,457 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Weather cache keeping its entries outside the heap, so that hundreds of thousands of cities
+ * add almost nothing for the garbage collector to trace or copy.
+ * All slots are allocated up front in direct buffers, each holding one entry with its snapshot
+ * fields, entity tag, city name and rendered JSON. Only the city to slot index, the slot owners
+ * and small tables of condition strings and of further conditions stay on the heap. Entries expire a fixed time after
+ * their data was fetched; when all slots are taken, a CLOCK sweep evicts an expired entry or one
+ * not read since the hand last passed it. Entries too large for a slot are not cached.
+ * Reads copy the entry out under a shared lock, writes take an exclusive lock.
+ */
+@Slf4j
+public class OffHeapWeatherCache implements WeatherCache {
+    /**
+     * Size of one slot in bytes.
+     */
+    public static final int SLOT_BYTES = 640;
+    private static final int SLOTS_PER_BUFFER = (1 << 30) / SLOT_BYTES;
+
+    // Slot layout
+    private static final int FETCHED_AT = 0;
+    private static final int EXPIRES_AT = 8;
+    private static final int EVICT_AT = 16;
+    private static final int DATETIME = 24;
+    private static final int SUNRISE = 32;
+    private static final int SUNSET = 40;
+    private static final int TEMP = 48;
+    private static final int FEELS_LIKE = 56;
+    private static final int WIND_SPEED = 64;
+    private static final int VISIBILITY = 72;
+    private static final int TIMEZONE = 76;
+    private static final int PRESENT = 80;
+    private static final int CONDITION = 82;
+    private static final int DESCRIPTION = 84;
+    private static final int NAME_LENGTH = 86;
+    private static final int JSON_LENGTH = 88;
+    private static final int ETAG_LENGTH = 90;
+    private static final int REFERENCED = 91;
+    private static final int OTHER_CONDITIONS = 92;
+    private static final int ETAG = 94;
+    private static final int NAME = 140;
+    private static final int JSON = 260;
+    private static final int MAX_ETAG_BYTES = NAME - ETAG;
+    private static final int MAX_NAME_BYTES = JSON - NAME;
+    private static final int MAX_JSON_BYTES = SLOT_BYTES - JSON;
+    private static final int MAX_STRINGS = Short.MAX_VALUE;
+
+    private final ByteBuffer[] buffers;
+    private final int capacity;
+    private final long ttlMillis;
+    private final StatsCounter statsCounter;
+    private final BiConsumer<String, RemovalCause> removalListener;
+    private final LongSupplier clock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final Map<String, Integer> index;
+    private final String[] owners;
+    private final int[] freeSlots;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String[]> conditionSets = new ArrayList<>();
+    private final Map<List<String>, Integer> conditionSetIds = new HashMap<>();
+    private int freeCount;
+    private int hand;
+
+    /**
+     * @param capacity Number of slots, i.e. the maximum number of cached cities
+     * @param ttl How long an entry stays after its data was fetched, 0 for no expiry
+     * @param statsCounter Counter recording hits, misses and evictions
+     * @param removalListener Called with the city and cause of every evicted entry, or null
+     */
+    public OffHeapWeatherCache(int capacity, Duration ttl, StatsCounter statsCounter,
+                               BiConsumer<String, RemovalCause> removalListener) {
+        this(capacity, ttl, statsCounter, removalListener, System::currentTimeMillis);
+    }
+
+    /**
+     * @param capacity Number of slots, i.e. the maximum number of cached cities
+     * @param ttl How long an entry stays after its data was fetched, 0 for no expiry
+     * @param statsCounter Counter recording hits, misses and evictions
+     * @param removalListener Called with the city and cause of every evicted entry, or null
+     * @param clock Source of millisecond timestamps
+     */
+    public OffHeapWeatherCache(int capacity, Duration ttl, StatsCounter statsCounter,
+                               BiConsumer<String, RemovalCause> removalListener, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Off-heap weather cache needs a positive capacity");
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttl != null ? ttl.toMillis() : 0;
+        this.statsCounter = statsCounter;
+        this.removalListener = removalListener;
+        this.clock = clock;
+        this.buffers = new ByteBuffer[(capacity + SLOTS_PER_BUFFER - 1) / SLOTS_PER_BUFFER];
+        for (int i = 0; i < buffers.length; i++) {
+            int slots = Math.min(SLOTS_PER_BUFFER, capacity - i * SLOTS_PER_BUFFER);
+            buffers[i] = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        }
+        this.index = new HashMap<>(capacity * 4 / 3 + 1);
+        this.owners = new String[capacity];
+        this.freeSlots = new int[capacity];
+        resetFreeSlots();
+        log.info("Allocated {} MB off-heap for {} cached cities", getOffHeapBytes() >> 20, capacity);
+    }
+
+    public RenderedWeather getIfPresent(String city) {
+        RenderedWeather weather = peek(city);
+        if (weather != null) {
+            statsCounter.recordHits(1);
+        } else {
+            statsCounter.recordMisses(1);
+        }
+        return weather;
+    }
+
+    /**
+     * Reads an entry without recording a hit or a miss.
+     */
+    public RenderedWeather peek(String city) {
+        lock.readLock().lock();
+        try {
+            Integer slot = index.get(city);
+            if (slot == null) {
+                return null;
+            }
+            ByteBuffer buffer = buffer(slot);
+            int base = base(slot);
+            if (isExpired(buffer, base, clock.getAsLong())) {
+                return null;
+            }
+            buffer.put(base + REFERENCED, (byte) 1);
+            return read(buffer, base);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores an entry. An expired entry of the city is reported to the removal listener as expired;
+     * a live one that has to go because the new entry does not fit a slot is reported as evicted for size.
+     *
+     * @return The live entry replaced or removed, or null if there was none
+     */
+    public RenderedWeather put(String city, RenderedWeather weather) {
+        WeatherSnapshot snapshot = weather.snapshot();
+        byte[] name = snapshot.name() != null ? snapshot.name().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] etag = weather.etag().getBytes(StandardCharsets.US_ASCII);
+        boolean fits = (name == null || name.length <= MAX_NAME_BYTES)
+                && etag.length <= MAX_ETAG_BYTES
+                && weather.json().length <= MAX_JSON_BYTES;
+
+        lock.writeLock().lock();
+        try {
+            long now = clock.getAsLong();
+            Integer existing = index.get(city);
+            RenderedWeather previous = null;
+            if (existing != null) {
+                if (isExpired(buffer(existing), base(existing), now)) {
+                    // the expired entry is gone before the new one is written, whether or not that fits
+                    evicted(city, RemovalCause.EXPIRED);
+                } else {
+                    previous = read(buffer(existing), base(existing));
+                }
+            }
+            int condition = fits ? stringId(snapshot.condition()) : -1;
+            int description = fits ? stringId(snapshot.description()) : -1;
+            int otherConditions = fits ? conditionSetId(snapshot.otherConditions()) : -1;
+            if (!fits || condition < -1 || description < -1 || otherConditions < -1) {
+                rejected.incrementAndGet();
+                log.debug("Weather data of city {} does not fit an off-heap slot", city);
+                if (existing != null) {
+                    release(existing);
+                    if (previous != null) {
+                        evicted(city, RemovalCause.SIZE);
+                    }
+                }
+                return previous;
+            }
+
+            int slot = existing != null ? existing : claimSlot(now);
+            write(buffer(slot), base(slot), weather, condition, description, otherConditions, name, etag);
+            if (existing == null) {
+                index.put(city, slot);
+                owners[slot] = city;
+            }
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the cities with an entry that has not expired.
+     */
+    public Set<String> cities() {
+        lock.readLock().lock();
+        try {
+            long now = clock.getAsLong();
+            Set<String> cities = new HashSet<>(index.size() * 4 / 3 + 1);
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                int slot = entry.getValue();
+                if (!isExpired(buffer(slot), base(slot), now)) {
+                    cities.add(entry.getKey());
+                }
+            }
+            return Set.copyOf(cities);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls the action with a copy of every entry that has not expired, holding the read lock.
+     */
+    public void forEach(BiConsumer<String, RenderedWeather> action) {
+        lock.readLock().lock();
+        try {
+            long now = clock.getAsLong();
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                int slot = entry.getValue();
+                if (!isExpired(buffer(slot), base(slot), now)) {
+                    action.accept(entry.getKey(), read(buffer(slot), base(slot)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            Arrays.fill(owners, null);
+            resetFreeSlots();
+            hand = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Returns the number of slots, i.e. the maximum number of cached cities.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the direct memory taken by the slots.
+     */
+    public long getOffHeapBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the number of writes not cached because the entry did not fit a slot.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private int claimSlot(long now) {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        while (true) {
+            int slot = hand;
+            hand = hand + 1 == capacity ? 0 : hand + 1;
+            ByteBuffer buffer = buffer(slot);
+            int base = base(slot);
+            boolean expired = isExpired(buffer, base, now);
+            if (!expired && buffer.get(base + REFERENCED) != 0) {
+                buffer.put(base + REFERENCED, (byte) 0);
+                continue;
+            }
+            String city = owners[slot];
+            index.remove(city);
+            owners[slot] = null;
+            evicted(city, expired ? RemovalCause.EXPIRED : RemovalCause.SIZE);
+            return slot;
+        }
+    }
+
+    private void evicted(String city, RemovalCause cause) {
+        statsCounter.recordEviction(1, cause);
+        log.debug("Evicted from off-heap cache: {} due to {}", city, cause);
+        if (removalListener != null) {
+            removalListener.accept(city, cause);
+        }
+    }
+
+    private void release(int slot) {
+        index.remove(owners[slot]);
+        owners[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void resetFreeSlots() {
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    private boolean isExpired(ByteBuffer buffer, int base, long now) {
+        long evictAt = buffer.getLong(base + EVICT_AT);
+        return evictAt != 0 && now >= evictAt;
+    }
+
+    private void write(ByteBuffer buffer, int base, RenderedWeather weather, int condition, int description,
+                       int otherConditions, byte[] name, byte[] etag) {
+        WeatherSnapshot snapshot = weather.snapshot();
+        buffer.putLong(base + FETCHED_AT, weather.fetchedAtMillis());
+        buffer.putLong(base + EXPIRES_AT, weather.expiresAtMillis());
+        buffer.putLong(base + EVICT_AT, ttlMillis > 0 ? weather.fetchedAtMillis() + ttlMillis : 0);
+        buffer.putLong(base + DATETIME, snapshot.datetime());
+        buffer.putLong(base + SUNRISE, snapshot.sunrise());
+        buffer.putLong(base + SUNSET, snapshot.sunset());
+        buffer.putDouble(base + TEMP, snapshot.temp());
+        buffer.putDouble(base + FEELS_LIKE, snapshot.feelsLike());
+        buffer.putDouble(base + WIND_SPEED, snapshot.windSpeed());
+        buffer.putInt(base + VISIBILITY, snapshot.visibility());
+        buffer.putInt(base + TIMEZONE, snapshot.timezone());
+        buffer.putShort(base + PRESENT, snapshot.present());
+        buffer.putShort(base + CONDITION, (short) condition);
+        buffer.putShort(base + DESCRIPTION, (short) description);
+        buffer.putShort(base + OTHER_CONDITIONS, (short) otherConditions);
+        buffer.putShort(base + NAME_LENGTH, (short) (name != null ? name.length : -1));
+        buffer.putShort(base + JSON_LENGTH, (short) weather.json().length);
+        buffer.put(base + ETAG_LENGTH, (byte) etag.length);
+        buffer.put(base + REFERENCED, (byte) 0);
+        buffer.put(base + ETAG, etag);
+        if (name != null) {
+            buffer.put(base + NAME, name);
+        }
+        buffer.put(base + JSON, weather.json());
+    }
+
+    private RenderedWeather read(ByteBuffer buffer, int base) {
+        short nameLength = buffer.getShort(base + NAME_LENGTH);
+        String name = null;
+        if (nameLength >= 0) {
+            byte[] bytes = new byte[nameLength];
+            buffer.get(base + NAME, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        WeatherSnapshot snapshot = new WeatherSnapshot(
+            string(buffer.getShort(base + CONDITION)),
+            string(buffer.getShort(base + DESCRIPTION)),
+            buffer.getDouble(base + TEMP),
+            buffer.getDouble(base + FEELS_LIKE),
+            buffer.getInt(base + VISIBILITY),
+            buffer.getDouble(base + WIND_SPEED),
+            buffer.getLong(base + DATETIME),
+            buffer.getLong(base + SUNRISE),
+            buffer.getLong(base + SUNSET),
+            buffer.getInt(base + TIMEZONE),
+            name,
+            buffer.getShort(base + PRESENT),
+            conditionSet(buffer.getShort(base + OTHER_CONDITIONS)));
+        byte[] etag = new byte[buffer.get(base + ETAG_LENGTH)];
+        buffer.get(base + ETAG, etag);
+        byte[] json = new byte[buffer.getShort(base + JSON_LENGTH)];
+        buffer.get(base + JSON, json);
+        return new RenderedWeather(snapshot, json, new String(etag, StandardCharsets.US_ASCII),
+            buffer.getLong(base + FETCHED_AT), buffer.getLong(base + EXPIRES_AT));
+    }
+
+    /**
+     * Returns the id of a condition string, adding it to the table if needed.
+     * Returns -1 for null and -2 if the table is full.
+     */
+    private int stringId(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (strings.size() >= MAX_STRINGS) {
+            return -2;
+        }
+        strings.add(value);
+        stringIds.put(value, strings.size() - 1);
+        return strings.size() - 1;
+    }
+
+    private String string(short id) {
+        return id >= 0 ? strings.get(id) : null;
+    }
+
+    /**
+     * Returns the id of a set of further conditions, adding it to the table if needed.
+     * Returns -1 for null and -2 if the table is full.
+     */
+    private int conditionSetId(String[] conditions) {
+        if (conditions == null) {
+            return -1;
+        }
+        List<String> key = Arrays.asList(conditions);
+        Integer id = conditionSetIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (conditionSets.size() >= MAX_STRINGS) {
+            return -2;
+        }
+        String[] copy = conditions.clone();
+        conditionSets.add(copy);
+        conditionSetIds.put(Arrays.asList(copy), conditionSets.size() - 1);
+        return conditionSets.size() - 1;
+    }
+
+    private String[] conditionSet(short id) {
+        return id >= 0 ? conditionSets.get(id).clone() : null;
+    }
+
+    private ByteBuffer buffer(int slot) {
+        return buffers[slot / SLOTS_PER_BUFFER];
+    }
+
+    private static int base(int slot) {
+        return slot % SLOTS_PER_BUFFER * SLOT_BYTES;
+    }
+}
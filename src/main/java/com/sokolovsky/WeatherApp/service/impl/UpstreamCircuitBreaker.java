@@ -0,0 +1,178 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for the upstream calls made with one API key.
+ * After a number of consecutive failed calls the breaker opens and rejects calls without
+ * sending them, so callers fail fast instead of waiting on an upstream that is down.
+ * Once the open time has passed a single probe call is let through: if it succeeds the
+ * breaker closes, if it fails the breaker opens again for twice as long, up to a maximum.
+ * Every state change starts a new generation; results of calls permitted in an earlier
+ * generation are ignored, so a slow call started before the breaker opened cannot close it
+ * or count against the probe.
+ */
+@Slf4j
+public class UpstreamCircuitBreaker {
+    /**
+     * Returned by {@link #tryAcquire()} when a call may not go upstream.
+     */
+    public static final long REJECTED = -1;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long currentOpenNanos;
+    private long openUntil;
+    private boolean probeInFlight;
+    private long generation;
+    private long openedCount;
+    private long rejectedCount;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * @param failureThreshold Number of consecutive failures that opens the breaker
+     * @param openDuration Time the breaker stays open after it first opens
+     * @param maxOpenDuration Longest time the breaker stays open after repeated failed probes
+     */
+    public UpstreamCircuitBreaker(int failureThreshold, Duration openDuration, Duration maxOpenDuration) {
+        this(failureThreshold, openDuration, maxOpenDuration, System::nanoTime);
+    }
+
+    /**
+     * @param failureThreshold Number of consecutive failures that opens the breaker
+     * @param openDuration Time the breaker stays open after it first opens
+     * @param maxOpenDuration Longest time the breaker stays open after repeated failed probes
+     * @param clock Source of nanosecond timestamps
+     */
+    public UpstreamCircuitBreaker(int failureThreshold, Duration openDuration, Duration maxOpenDuration,
+                                  LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = Math.max(1, openDuration.toNanos());
+        this.maxOpenNanos = Math.max(openNanos, maxOpenDuration.toNanos());
+        this.clock = clock;
+    }
+
+    /**
+     * Decides whether a call may go upstream. Every permitted call must be followed by
+     * {@link #onSuccess(long)}, {@link #onFailure(long)} or {@link #release(long)} with the returned permit.
+     *
+     * @return Permit of the call, or {@link #REJECTED} if it may not go upstream
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN && clock.getAsLong() - openUntil >= 0) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED || (state == State.HALF_OPEN && !probeInFlight)) {
+            probeInFlight = state == State.HALF_OPEN;
+            return generation;
+        }
+        rejectedCount++;
+        return REJECTED;
+    }
+
+    /**
+     * Records that a permitted call got an answer from upstream.
+     *
+     * @param permit Permit returned by {@link #tryAcquire()} for the call
+     */
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            log.info("Upstream recovered, closing circuit breaker");
+            transition(State.CLOSED);
+            currentOpenNanos = 0;
+        }
+    }
+
+    /**
+     * Records that a permitted call failed because upstream was unavailable.
+     *
+     * @param permit Permit returned by {@link #tryAcquire()} for the call
+     */
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            open(Math.min(maxOpenNanos, currentOpenNanos * 2));
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open(openNanos);
+        }
+    }
+
+    /**
+     * Gives back a permit whose call was not sent.
+     *
+     * @param permit Permit returned by {@link #tryAcquire()} for the call
+     */
+    public synchronized void release(long permit) {
+        if (permit == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    private void open(long nanos) {
+        currentOpenNanos = nanos;
+        openUntil = clock.getAsLong() + nanos;
+        transition(State.OPEN);
+        consecutiveFailures = 0;
+        openedCount++;
+        log.warn("Upstream failing, opening circuit breaker for {} ms", TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private void transition(State next) {
+        state = next;
+        probeInFlight = false;
+        generation++;
+    }
+
+    /**
+     * Returns the state calls currently see: an open breaker whose open time has passed is half-open,
+     * even before the next call moves it there.
+     */
+    public synchronized State getState() {
+        return state == State.OPEN && clock.getAsLong() - openUntil >= 0 ? State.HALF_OPEN : state;
+    }
+
+    /**
+     * Returns how many times the breaker has opened, including reopening after a failed probe.
+     */
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    /**
+     * Returns the number of calls rejected without going upstream.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns how long until the breaker lets a probe call through.
+     *
+     * @return Remaining open time, zero unless open
+     */
+    public synchronized Duration getRemainingOpenTime() {
+        return state == State.OPEN ? Duration.ofNanos(Math.max(0, openUntil - clock.getAsLong())) : Duration.ZERO;
+    }
+}
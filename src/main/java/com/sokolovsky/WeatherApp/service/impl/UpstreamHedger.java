@@ -0,0 +1,221 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, hedged attempt of an upstream call when the first one is slower than most
+ * recent calls. The hedge delay is a percentile of the latencies of the last {@value #WINDOW}
+ * successful attempts; no call is hedged until {@value #MIN_SAMPLES} latencies are known.
+ * The first attempt to succeed wins and the other one is cancelled by interrupting it.
+ * Each call earns a fraction of a hedge, so at most that fraction of calls is hedged
+ * over time, with bursts of up to {@value #MAX_BURST} hedges.
+ */
+public class UpstreamHedger {
+    private static final int WINDOW = 512;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final double MAX_BURST = 10;
+
+    private final ExecutorService executor;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double maxHedgeRate;
+    private final LongSupplier clock;
+    private final long[] latencies = new long[WINDOW];
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private int samples;
+    private int next;
+    private long delayNanos = -1;
+    private double budget;
+
+    /**
+     * @param executor Pool running the attempts; needs room for two attempts per concurrent call
+     * @param percentile Latency percentile after which a call is hedged, between 0 and 1
+     * @param minDelay Shortest time to wait before hedging
+     * @param maxHedgeRate Largest fraction of calls that may be hedged
+     */
+    public UpstreamHedger(ExecutorService executor, double percentile, Duration minDelay, double maxHedgeRate) {
+        this(executor, percentile, minDelay, maxHedgeRate, System::nanoTime);
+    }
+
+    /**
+     * @param executor Pool running the attempts; needs room for two attempts per concurrent call
+     * @param percentile Latency percentile after which a call is hedged, between 0 and 1
+     * @param minDelay Shortest time to wait before hedging
+     * @param maxHedgeRate Largest fraction of calls that may be hedged
+     * @param clock Source of nanosecond timestamps measuring the attempt latencies
+     */
+    public UpstreamHedger(ExecutorService executor, double percentile, Duration minDelay, double maxHedgeRate,
+                          LongSupplier clock) {
+        this.executor = executor;
+        this.percentile = Math.min(1, Math.max(0, percentile));
+        this.minDelayNanos = Math.max(0, minDelay.toNanos());
+        this.maxHedgeRate = Math.min(1, Math.max(0, maxHedgeRate));
+        this.clock = clock;
+    }
+
+    /**
+     * Runs an upstream call, hedging it if it takes longer than the hedge delay.
+     * If both attempts fail, the failure of the first attempt is thrown.
+     *
+     * @param attempt First attempt
+     * @param hedge Hedged attempt, run at most once
+     * @param mayHedge Checked before hedging, e.g. whether upstream is healthy enough for an extra call
+     * @return Result of the first successful attempt
+     */
+    public <T> T call(Supplier<T> attempt, Supplier<T> hedge, BooleanSupplier mayHedge) {
+        calls.incrementAndGet();
+        long delay = earnHedgeAndGetDelay();
+        Call<T> call = new Call<>();
+        Future<?> first = executor.submit(() -> call.run(attempt, false));
+        Future<?> second = null;
+        try {
+            if (delay < 0) {
+                return call.result.get();
+            }
+            try {
+                return call.result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!call.result.isDone() && mayHedge.getAsBoolean() && takeHedge()) {
+                    if (call.addAttempt()) {
+                        hedged.incrementAndGet();
+                        second = executor.submit(() -> call.run(hedge, true));
+                    } else {
+                        returnHedge();
+                    }
+                }
+                return call.result.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new WeatherApiException("Upstream call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherApiException("Interrupted while waiting for upstream", e);
+        } finally {
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the current hedge delay.
+     *
+     * @return Delay after which calls are hedged, or null while too few latencies are known
+     */
+    public synchronized Duration getHedgeDelay() {
+        return delayNanos >= 0 ? Duration.ofNanos(delayNanos) : null;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getHedgedCount() {
+        return hedged.get();
+    }
+
+    /**
+     * Returns the number of hedged calls answered by the hedged attempt.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    private synchronized long earnHedgeAndGetDelay() {
+        budget = Math.min(MAX_BURST, budget + maxHedgeRate);
+        return delayNanos;
+    }
+
+    private synchronized boolean takeHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    private synchronized void returnHedge() {
+        budget = Math.min(MAX_BURST, budget + 1);
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % WINDOW;
+        samples++;
+        if (samples >= MIN_SAMPLES && (delayNanos < 0 || samples % RECOMPUTE_EVERY == 0)) {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(samples, WINDOW));
+            Arrays.sort(sorted);
+            int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+        }
+    }
+
+    /**
+     * Outcome shared by the attempts of one call. The first successful attempt wins it;
+     * it fails once every started attempt has failed.
+     */
+    private final class Call<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicBoolean won = new AtomicBoolean();
+        volatile RuntimeException firstFailure;
+
+        /**
+         * Registers one more attempt, unless all started attempts have already failed.
+         */
+        boolean addAttempt() {
+            int current;
+            do {
+                current = pending.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!pending.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void run(Supplier<T> attempt, boolean isHedge) {
+            long start = clock.getAsLong();
+            try {
+                T value = attempt.get();
+                recordLatency(clock.getAsLong() - start);
+                if (won.compareAndSet(false, true)) {
+                    // counted before completing, so the caller sees the win once it has the result
+                    if (isHedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    result.complete(value);
+                }
+            } catch (RuntimeException e) {
+                if (!isHedge) {
+                    firstFailure = e;
+                }
+                if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(firstFailure != null ? firstFailure : e);
+                }
+            }
+        }
+    }
+}
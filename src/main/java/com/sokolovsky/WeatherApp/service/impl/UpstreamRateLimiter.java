@@ -0,0 +1,150 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting upstream calls made with one API key.
+ * The bucket refills continuously at the configured rate up to its capacity.
+ * Background refreshes may only take tokens above a reserve kept for on-demand requests,
+ * so on-demand traffic always goes first when the bucket runs low.
+ */
+public class UpstreamRateLimiter {
+    private final double capacity;
+    private final double refillPerNano;
+    private final double backgroundReserve;
+    private final LongSupplier clock;
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong rejectedOnDemand = new AtomicLong();
+    private final AtomicLong rejectedBackground = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+
+    private double tokens;
+    private long lastRefill;
+
+    public enum Priority {
+        ON_DEMAND,
+        BACKGROUND
+    }
+
+    /**
+     * @param callsPerMinute Sustained number of calls per minute
+     * @param burst Bucket capacity, i.e. the number of calls allowed at once
+     * @param backgroundReserve Fraction of the capacity background refreshes cannot use
+     */
+    public UpstreamRateLimiter(int callsPerMinute, int burst, double backgroundReserve) {
+        this(callsPerMinute, burst, backgroundReserve, System::nanoTime);
+    }
+
+    /**
+     * @param callsPerMinute Sustained number of calls per minute
+     * @param burst Bucket capacity, i.e. the number of calls allowed at once
+     * @param backgroundReserve Fraction of the capacity background refreshes cannot use
+     * @param clock Source of nanosecond timestamps
+     */
+    public UpstreamRateLimiter(int callsPerMinute, int burst, double backgroundReserve, LongSupplier clock) {
+        this.capacity = Math.max(1, burst);
+        this.refillPerNano = (double) callsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.backgroundReserve = capacity * Math.min(1, Math.max(0, backgroundReserve));
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token if one is available for the given priority.
+     *
+     * @param priority Priority of the call
+     * @return true if the call may go upstream
+     */
+    public boolean tryAcquire(Priority priority) {
+        if (nanosUntilAvailable(priority) == 0) {
+            return true;
+        }
+        recordRejection(priority);
+        return false;
+    }
+
+    /**
+     * Takes a token, waiting up to the given time for one to become available.
+     *
+     * @param priority Priority of the call
+     * @param maxWait Longest time to wait
+     * @return true if the call may go upstream
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(Priority priority, Duration maxWait) throws InterruptedException {
+        long deadline = clock.getAsLong() + maxWait.toNanos();
+        boolean hasWaited = false;
+        while (true) {
+            long waitNanos = nanosUntilAvailable(priority);
+            if (waitNanos == 0) {
+                if (hasWaited) {
+                    waited.incrementAndGet();
+                }
+                return true;
+            }
+            long remaining = deadline - clock.getAsLong();
+            if (remaining <= 0) {
+                recordRejection(priority);
+                return false;
+            }
+            hasWaited = true;
+            LockSupport.parkNanos(Math.min(waitNanos, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill(clock.getAsLong());
+        return tokens;
+    }
+
+    public long getGrantedCount() {
+        return granted.get();
+    }
+
+    public long getRejectedCount(Priority priority) {
+        return priority == Priority.ON_DEMAND ? rejectedOnDemand.get() : rejectedBackground.get();
+    }
+
+    /**
+     * Returns the number of granted on-demand calls that had to wait for a token.
+     */
+    public long getWaitedCount() {
+        return waited.get();
+    }
+
+    /**
+     * Takes a token if possible, otherwise returns how long until one is available.
+     */
+    private synchronized long nanosUntilAvailable(Priority priority) {
+        refill(clock.getAsLong());
+        double floor = priority == Priority.BACKGROUND ? backgroundReserve : 0;
+        double missing = floor + 1 - tokens;
+        if (missing <= 0) {
+            tokens -= 1;
+            granted.incrementAndGet();
+            return 0;
+        }
+        return refillPerNano > 0 ? Math.max(1, (long) Math.ceil(missing / refillPerNano)) : Long.MAX_VALUE;
+    }
+
+    private void recordRejection(Priority priority) {
+        if (priority == Priority.ON_DEMAND) {
+            rejectedOnDemand.incrementAndGet();
+        } else {
+            rejectedBackground.incrementAndGet();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,101 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of the weather executors: daemon platform threads, or virtual threads
+ * when {@code spring.threads.virtual.enabled} is set. Virtual threads need Java 21 while the
+ * application is built for Java 17, so they are looked up reflectively; on older runtimes
+ * platform threads are used and a warning is logged once.
+ * Code that may block while holding a lock on these threads uses {@code ReentrantLock} rather than
+ * {@code synchronized}: on Java 21 a virtual thread blocked inside a monitor pins its carrier thread.
+ */
+@Slf4j
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = find("java.lang.Thread", "ofVirtual");
+    private static final Method NAME = find("java.lang.Thread$Builder", "name", String.class, long.class);
+    private static final Method FACTORY = find("java.lang.Thread$Builder", "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR =
+        find("java.util.concurrent.Executors", "newThreadPerTaskExecutor", ThreadFactory.class);
+    private static final AtomicBoolean warned = new AtomicBoolean();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Returns whether virtual threads are used if requested, i.e. whether the runtime supports them.
+     *
+     * @param requested Whether virtual threads are enabled in the configuration
+     */
+    public static boolean isEnabled(boolean requested) {
+        if (requested && !isSupported() && warned.compareAndSet(false, true)) {
+            log.warn("Virtual threads need Java 21, running on Java {} with platform threads",
+                Runtime.version().feature());
+        }
+        return requested && isSupported();
+    }
+
+    /**
+     * Returns a factory of threads named with the given prefix followed by a counter.
+     *
+     * @param prefix Prefix of the thread names
+     * @param virtual Whether to create virtual threads if the runtime supports them
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (isEnabled(virtual)) {
+            return (ThreadFactory) invoke(FACTORY, invoke(NAME, invoke(OF_VIRTUAL, null), prefix, 1L));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns an executor running each task on a new virtual thread, or, without virtual threads,
+     * a cached pool of platform threads that grows with the number of running tasks.
+     *
+     * @param prefix Prefix of the thread names
+     * @param virtual Whether to use virtual threads if the runtime supports them
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix, boolean virtual) {
+        if (isEnabled(virtual)) {
+            return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, factory(prefix, true));
+        }
+        return Executors.newCachedThreadPool(factory(prefix, false));
+    }
+
+    private static Method find(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call " + method, e);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException("Failed to call " + method, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.dto.CityWeatherDTO;
+import com.sokolovsky.WeatherApp.exception.CircuitOpenException;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherBatchService;
+import com.sokolovsky.WeatherApp.service.WeatherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Fetches weather data for many cities at once on top of {@link WeatherService#getRenderedWeatherAsync}.
+ * Duplicate and blank city names are dropped. Cache hits are served right away, while at most
+ * a fixed number of misses per batch are fetched at the same time. A failing city is reported
+ * in its own result and does not fail the rest of the batch, and a city served stale data is
+ * marked stale in its result.
+ */
+@Service
+@Slf4j
+public class WeatherBatchServiceImpl implements WeatherBatchService {
+    private final int maxConcurrency;
+
+    @Autowired
+    public WeatherBatchServiceImpl(WeatherConfig config) {
+        this(config.getBatchMaxConcurrency());
+    }
+
+    /**
+     * @param maxConcurrency Maximum number of cities of one batch fetched upstream at the same time
+     */
+    public WeatherBatchServiceImpl(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Gets weather data for the given cities.
+     *
+     * @param service Weather service of the caller's API key
+     * @param cities City names, possibly with duplicates
+     * @return Future of one result per distinct city, in request order
+     */
+    public CompletableFuture<List<CityWeatherDTO>> getWeatherData(WeatherService service, Collection<String> cities) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String city : cities) {
+            if (city != null && !city.isBlank()) {
+                distinct.add(city.trim());
+            }
+        }
+        Batch batch = new Batch(service, List.copyOf(distinct));
+        batch.launch();
+        return CompletableFuture.allOf(batch.results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> batch.results.stream().map(CompletableFuture::join).toList());
+    }
+
+    private static CityWeatherDTO toResult(String city, RenderedWeather weather, Throwable error) {
+        if (error == null) {
+            return CityWeatherDTO.success(city, weather.weather(), weather.stale());
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RateLimitExceededException) {
+            return CityWeatherDTO.failure(city, 429, cause.getMessage());
+        }
+        if (cause instanceof CircuitOpenException) {
+            return CityWeatherDTO.failure(city, 503, cause.getMessage());
+        }
+        if (cause instanceof WeatherApiException) {
+            return CityWeatherDTO.failure(city, 400, cause.getMessage());
+        }
+        log.error("Unexpected error getting weather data for city: {}", city, cause);
+        return CityWeatherDTO.failure(city, 500, "Internal error");
+    }
+
+    /**
+     * Cities of one request and the fetches started for them so far.
+     */
+    private final class Batch {
+        private final WeatherService service;
+        private final List<String> cities;
+        private final List<CompletableFuture<CityWeatherDTO>> results;
+        private int next;
+        private int running;
+
+        Batch(WeatherService service, List<String> cities) {
+            this.service = service;
+            this.cities = cities;
+            this.results = new ArrayList<>(cities.size());
+            for (int i = 0; i < cities.size(); i++) {
+                results.add(new CompletableFuture<>());
+            }
+        }
+
+        /**
+         * Starts fetches until the concurrency limit is reached. Requests that complete
+         * right away, i.e. cache hits, do not count towards the limit.
+         */
+        synchronized void launch() {
+            while (running < maxConcurrency && next < cities.size()) {
+                int index = next++;
+                String city = cities.get(index);
+                CompletableFuture<RenderedWeather> weather;
+                try {
+                    weather = service.getRenderedWeatherAsync(city);
+                } catch (RuntimeException e) {
+                    weather = CompletableFuture.failedFuture(e);
+                }
+                if (weather.isDone()) {
+                    weather.whenComplete((value, error) -> results.get(index).complete(toResult(city, value, error)));
+                    continue;
+                }
+                running++;
+                weather.whenComplete((value, error) -> {
+                    results.get(index).complete(toResult(city, value, error));
+                    finished();
+                });
+            }
+        }
+
+        private synchronized void finished() {
+            running--;
+            launch();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Binary snapshot of a weather cache, so a restarted service starts with the entries
+ * it had instead of sending every first request upstream.
+ * The file holds a header with the entry count followed by one record per city with its
+ * fetch time, snapshot fields, entity tag and rendered JSON. It is written to a temporary
+ * file and moved into place, so a crash never leaves a partial snapshot behind, and it is
+ * memory-mapped when loaded. All instances for the same file share one lock, so saves and
+ * loads of a file never interleave, even through the same temporary file.
+ */
+@Slf4j
+public class WeatherCacheSnapshotFile {
+    private static final int MAGIC = 0x57534e32; // "WSN2"
+    // Smallest record writeRecord can produce: five null strings, five longs, three doubles,
+    // two ints, a short, no further conditions and the length of an empty rendering
+    private static final int MIN_RECORD_BYTES = 5 * 4 + 5 * 8 + 3 * 8 + 2 * 4 + 2 + 4 + 4;
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final ReentrantLock lock;
+
+    public WeatherCacheSnapshotFile(Path file) {
+        this.file = file;
+        this.lock = LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), k -> new ReentrantLock());
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes all entries of the cache, replacing the previous snapshot.
+     *
+     * @param cache Cache to save
+     * @return Number of saved entries
+     * @throws IOException if the snapshot cannot be written
+     */
+    public int save(WeatherCache cache) throws IOException {
+        lock.lock();
+        try {
+            List<Map.Entry<String, RenderedWeather>> entries = new ArrayList<>();
+            cache.forEach((city, weather) -> entries.add(Map.entry(city, weather)));
+
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, RenderedWeather> entry : entries) {
+                    writeRecord(out, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the snapshot and passes every entry fetched less than a TTL ago to the consumer.
+     * A missing file yields no entries; a damaged one yields none either. Counts and lengths are
+     * checked against the file size before anything is allocated for them.
+     *
+     * @param ttl Age after which an entry is skipped, in milliseconds, 0 to keep all
+     * @param consumer Receives the city and weather of each kept entry
+     * @return Number of kept entries
+     */
+    public int load(long ttl, BiConsumer<String, RenderedWeather> consumer) {
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            List<Map.Entry<String, RenderedWeather>> entries;
+            int skipped = 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException("Unrecognized weather cache snapshot format");
+                }
+                int count = buffer.getInt();
+                if (count < 0 || count > buffer.remaining() / MIN_RECORD_BYTES) {
+                    throw new IOException("Invalid entry count " + count);
+                }
+                long now = System.currentTimeMillis();
+                entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String city = readString(buffer);
+                    RenderedWeather weather = readWeather(buffer);
+                    if (ttl > 0 && now - weather.fetchedAtMillis() >= ttl) {
+                        skipped++;
+                    } else {
+                        entries.add(Map.entry(city, weather));
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return 0;
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+                log.warn("Failed to load weather cache snapshot {}, starting empty", file, e);
+                return 0;
+            }
+            entries.forEach(entry -> consumer.accept(entry.getKey(), entry.getValue()));
+            log.info("Restored {} cached cities from {} in {} ms, {} expired",
+                entries.size(), file, (System.nanoTime() - start) / 1_000_000, skipped);
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String city, RenderedWeather weather) throws IOException {
+        WeatherSnapshot snapshot = weather.snapshot();
+        writeString(out, city);
+        out.writeLong(weather.fetchedAtMillis());
+        out.writeLong(weather.expiresAtMillis());
+        writeString(out, snapshot.condition());
+        writeString(out, snapshot.description());
+        out.writeDouble(snapshot.temp());
+        out.writeDouble(snapshot.feelsLike());
+        out.writeInt(snapshot.visibility());
+        out.writeDouble(snapshot.windSpeed());
+        out.writeLong(snapshot.datetime());
+        out.writeLong(snapshot.sunrise());
+        out.writeLong(snapshot.sunset());
+        out.writeInt(snapshot.timezone());
+        writeString(out, snapshot.name());
+        out.writeShort(snapshot.present());
+        String[] otherConditions = snapshot.otherConditions();
+        out.writeInt(otherConditions != null ? otherConditions.length : -1);
+        if (otherConditions != null) {
+            for (String value : otherConditions) {
+                writeString(out, value);
+            }
+        }
+        writeString(out, weather.etag());
+        out.writeInt(weather.json().length);
+        out.write(weather.json());
+    }
+
+    /**
+     * Reads one entry, interning condition strings like {@link WeatherSnapshot#of} does.
+     */
+    private static RenderedWeather readWeather(ByteBuffer in) throws IOException {
+        long fetchedAt = in.getLong();
+        long expiresAt = in.getLong();
+        WeatherSnapshot snapshot = new WeatherSnapshot(
+            WeatherSnapshot.intern(readString(in)),
+            WeatherSnapshot.intern(readString(in)),
+            in.getDouble(),
+            in.getDouble(),
+            in.getInt(),
+            in.getDouble(),
+            in.getLong(),
+            in.getLong(),
+            in.getLong(),
+            in.getInt(),
+            readString(in),
+            in.getShort(),
+            readConditions(in));
+        String etag = readString(in);
+        byte[] json = new byte[checkLength(in, in.getInt())];
+        in.get(json);
+        return new RenderedWeather(snapshot, json, etag, fetchedAt, expiresAt);
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, or -1 for null.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(in, length)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readConditions(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        if (count == -1) {
+            return null;
+        }
+        // every string takes at least its length prefix
+        if (count < 0 || count > in.remaining() / 4) {
+            throw new IOException("Invalid condition count " + count);
+        }
+        String[] conditions = new String[count];
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = WeatherSnapshot.intern(readString(in));
+        }
+        return conditions;
+    }
+
+    /**
+     * Rejects a length read from the file that is negative or exceeds the rest of the file.
+     */
+    private static int checkLength(ByteBuffer in, int length) throws IOException {
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid length " + length + " at offset " + (in.position() - 4));
+        }
+        return length;
+    }
+}
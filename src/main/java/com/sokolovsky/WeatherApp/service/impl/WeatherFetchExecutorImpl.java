@@ -0,0 +1,90 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.service.WeatherFetchExecutor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide pool running on-demand upstream fetches for asynchronous requests.
+ * Request threads hand their misses over to this pool and are released while the
+ * upstream calls are in flight. Fetches beyond the pool size wait in its queue.
+ * With virtual threads, every fetch gets its own thread and none wait.
+ */
+@Component
+@Slf4j
+public class WeatherFetchExecutorImpl implements WeatherFetchExecutor {
+    private final ExecutorService executor;
+    private final AtomicInteger running = new AtomicInteger();
+
+    @Autowired
+    public WeatherFetchExecutorImpl(WeatherConfig config) {
+        this(config.getAsyncFetchThreads(), config.isVirtualThreads());
+    }
+
+    /**
+     * @param threads Maximum number of upstream fetches running at the same time
+     */
+    public WeatherFetchExecutorImpl(int threads) {
+        this(threads, false);
+    }
+
+    /**
+     * @param threads Maximum number of upstream fetches running at the same time on platform threads
+     * @param virtual Whether to run each fetch on its own virtual thread instead, if supported
+     */
+    public WeatherFetchExecutorImpl(int threads, boolean virtual) {
+        if (VirtualThreads.isEnabled(virtual)) {
+            this.executor = VirtualThreads.newThreadPerTaskExecutor("weather-fetch-", true);
+            return;
+        }
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            VirtualThreads.factory("weather-fetch-", false));
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Runs the task on the pool.
+     *
+     * @param task Fetch to run
+     * @throws java.util.concurrent.RejectedExecutionException if the pool is shut down
+     */
+    public void execute(Runnable task) {
+        if (executor instanceof ThreadPoolExecutor) {
+            executor.execute(task);
+            return;
+        }
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    public int getActiveTaskCount() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getActiveCount() : running.get();
+    }
+
+    public int getQueuedTaskCount() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        log.debug("Weather fetch executor stopped");
+    }
+}
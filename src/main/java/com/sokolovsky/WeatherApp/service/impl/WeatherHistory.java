@@ -0,0 +1,160 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.dto.WeatherHistoryDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the last observations of each city in fixed-size ring buffers of primitive arrays,
+ * one per field, allocated once when the city is first recorded. Recording an observation
+ * allocates nothing, and a query allocates only the arrays it returns.
+ * An observation is only recorded if it is newer than the last one of the city, so polls
+ * that see the same upstream observation again do not fill the buffer with duplicates.
+ * Cities beyond the maximum count are not recorded until a city is forgotten, which the
+ * service does when the city is evicted from a full weather cache.
+ */
+public class WeatherHistory {
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final int maxCities;
+
+    /**
+     * @param capacity Number of observations kept per city
+     * @param maxCities Maximum number of cities with a history
+     */
+    public WeatherHistory(int capacity, int maxCities) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.maxCities = maxCities;
+    }
+
+    /**
+     * Appends an observation to the history of a city.
+     *
+     * @param city Name of the city
+     * @param weather Observed weather, ignored without an observation time
+     */
+    public void record(String city, WeatherSnapshot weather) {
+        if (weather.datetime() <= 0) {
+            return;
+        }
+        Series citySeries = series.get(city);
+        if (citySeries == null) {
+            if (series.size() >= maxCities) {
+                return;
+            }
+            citySeries = series.computeIfAbsent(city, k -> new Series(capacity));
+        }
+        citySeries.append(weather);
+    }
+
+    /**
+     * Returns the observations of a city made within a time window.
+     *
+     * @param city Name of the city
+     * @param fromSeconds Earliest observation time, inclusive, in epoch seconds
+     * @param toSeconds Latest observation time, inclusive, in epoch seconds
+     * @return Observations in the window, oldest first, or null if the city has no history
+     */
+    public WeatherHistoryDTO get(String city, long fromSeconds, long toSeconds) {
+        Series citySeries = series.get(city);
+        return citySeries != null ? citySeries.window(city, fromSeconds, toSeconds) : null;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int cityCount() {
+        return series.size();
+    }
+
+    public void forget(String city) {
+        series.remove(city);
+    }
+
+    public void clear() {
+        series.clear();
+    }
+
+    /**
+     * Ring buffer of one city. The oldest observation is at {@code head}, the newest at
+     * {@code head + size - 1} modulo the capacity; observation times increase along the ring.
+     */
+    private static final class Series {
+        private final long[] datetime;
+        private final double[] temp;
+        private final double[] feelsLike;
+        private final double[] windSpeed;
+        private final int[] visibility;
+        private int head;
+        private int size;
+
+        Series(int capacity) {
+            datetime = new long[capacity];
+            temp = new double[capacity];
+            feelsLike = new double[capacity];
+            windSpeed = new double[capacity];
+            visibility = new int[capacity];
+        }
+
+        synchronized void append(WeatherSnapshot weather) {
+            int capacity = datetime.length;
+            if (size > 0 && weather.datetime() <= datetime[(head + size - 1) % capacity]) {
+                return;
+            }
+            int slot;
+            if (size < capacity) {
+                slot = (head + size++) % capacity;
+            } else {
+                slot = head;
+                head = (head + 1) % capacity;
+            }
+            datetime[slot] = weather.datetime();
+            temp[slot] = weather.temp();
+            feelsLike[slot] = weather.feelsLike();
+            windSpeed[slot] = weather.windSpeed();
+            visibility[slot] = weather.visibility();
+        }
+
+        synchronized WeatherHistoryDTO window(String city, long fromSeconds, long toSeconds) {
+            int first = firstAtOrAfter(fromSeconds);
+            int end = toSeconds == Long.MAX_VALUE ? size : firstAtOrAfter(toSeconds + 1);
+            int count = Math.max(0, end - first);
+            WeatherHistoryDTO result = new WeatherHistoryDTO(city, new long[count], new double[count],
+                new double[count], new double[count], new int[count]);
+            int capacity = datetime.length;
+            for (int i = 0; i < count; i++) {
+                int slot = (head + first + i) % capacity;
+                result.datetime()[i] = datetime[slot];
+                result.temp()[i] = temp[slot];
+                result.feelsLike()[i] = feelsLike[slot];
+                result.windSpeed()[i] = windSpeed[slot];
+                result.visibility()[i] = visibility[slot];
+            }
+            return result;
+        }
+
+        /**
+         * Binary search for the position, counted from the oldest observation,
+         * of the first observation made at or after the given time.
+         */
+        private int firstAtOrAfter(long seconds) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (datetime[(head + mid) % datetime.length] < seconds) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
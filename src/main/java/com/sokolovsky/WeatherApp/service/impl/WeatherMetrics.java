@@ -0,0 +1,190 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamRateLimiter.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the weather service of one API key, tagged with a hash of the key.
+ * Counters kept by the cache, rate limiter, circuit breaker and hedgers are read when the
+ * registry is scraped; upstream calls, JSON parsing, cache loads and polling cycles are timed
+ * as they happen. Timers of upstream calls and cache loads publish percentile histograms,
+ * so latency SLOs can be computed across instances. {@link #close()} removes all meters.
+ */
+public class WeatherMetrics implements AutoCloseable {
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private final Timer[][] upstreamTimers = new Timer[Api.values().length][Outcome.values().length];
+    private final Timer[] parseTimers = new Timer[Api.values().length];
+    private final Timer loadSuccessTimer;
+    private final Timer loadFailureTimer;
+    private final Timer pollCycleTimer;
+    private final Counter refreshFailures;
+
+    public enum Api {
+        GEO,
+        WEATHER
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        CLIENT_ERROR,
+        ERROR,
+        CANCELLED
+    }
+
+    /**
+     * @param registry Registry to add the meters to
+     * @param keyHash Hash identifying the API key, never the key itself
+     */
+    public WeatherMetrics(MeterRegistry registry, String keyHash) {
+        this.registry = registry;
+        this.tags = Tags.of("key", keyHash);
+        for (Api api : Api.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                upstreamTimers[api.ordinal()][outcome.ordinal()] = add(Timer.builder("weather.upstream.requests")
+                        .description("Upstream API calls")
+                        .tags(tags).tag("api", tagValue(api)).tag("outcome", tagValue(outcome))
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            parseTimers[api.ordinal()] = add(Timer.builder("weather.upstream.parse")
+                    .description("Reading and parsing upstream JSON responses")
+                    .tags(tags).tag("api", tagValue(api))
+                    .register(registry));
+        }
+        this.loadSuccessTimer = add(loadTimer("success"));
+        this.loadFailureTimer = add(loadTimer("failure"));
+        this.pollCycleTimer = add(Timer.builder("weather.polling.cycle")
+                .description("Polling cycles refreshing cached cities")
+                .tags(tags)
+                .register(registry));
+        this.refreshFailures = add(Counter.builder("weather.polling.refresh.failures")
+                .description("City refreshes of polling cycles that failed")
+                .tags(tags)
+                .register(registry));
+    }
+
+    private Timer loadTimer(String outcome) {
+        return Timer.builder("weather.cache.load")
+                .description("Cache misses loaded from upstream")
+                .tags(tags).tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * @param cache Cache whose hits and misses are counted
+     * @param statsCounter Counter of the cache's evictions per cause
+     */
+    public void bindCache(WeatherCache cache, EvictionStatsCounter statsCounter) {
+        add(FunctionCounter.builder("weather.cache.requests", cache, c -> c.stats().hitCount())
+                .description("Cache lookups")
+                .tags(tags).tag("outcome", "hit")
+                .register(registry));
+        add(FunctionCounter.builder("weather.cache.requests", cache, c -> c.stats().missCount())
+                .description("Cache lookups")
+                .tags(tags).tag("outcome", "miss")
+                .register(registry));
+        for (RemovalCause cause : RemovalCause.values()) {
+            if (cause.wasEvicted()) {
+                add(FunctionCounter.builder("weather.cache.evictions", statsCounter, c -> c.getEvictionCount(cause))
+                        .description("Entries evicted from the cache, because they expired or the cache was full")
+                        .tags(tags).tag("cause", tagValue(cause))
+                        .register(registry));
+            }
+        }
+    }
+
+    public void bindRateLimiter(UpstreamRateLimiter rateLimiter) {
+        for (Priority priority : Priority.values()) {
+            add(FunctionCounter.builder("weather.upstream.rejected", rateLimiter, l -> l.getRejectedCount(priority))
+                    .description("Upstream calls not made")
+                    .tags(tags).tag("reason", "rate_limit").tag("priority", tagValue(priority))
+                    .register(registry));
+        }
+        add(Gauge.builder("weather.rate.limit.tokens", rateLimiter, UpstreamRateLimiter::getAvailableTokens)
+                .description("Upstream calls currently available from the rate limiter")
+                .tags(tags)
+                .register(registry));
+    }
+
+    public void bindCircuitBreaker(UpstreamCircuitBreaker circuitBreaker) {
+        add(FunctionCounter.builder("weather.upstream.rejected", circuitBreaker, UpstreamCircuitBreaker::getRejectedCount)
+                .description("Upstream calls not made")
+                .tags(tags).tag("reason", "circuit_open").tag("priority", "any")
+                .register(registry));
+        add(FunctionCounter.builder("weather.circuit.breaker.opened", circuitBreaker,
+                    UpstreamCircuitBreaker::getOpenedCount)
+                .description("Times the circuit breaker opened")
+                .tags(tags)
+                .register(registry));
+        for (UpstreamCircuitBreaker.State state : UpstreamCircuitBreaker.State.values()) {
+            add(Gauge.builder("weather.circuit.breaker.state", circuitBreaker, b -> b.getState() == state ? 1 : 0)
+                    .description("1 for the current state of the circuit breaker, 0 for the others")
+                    .tags(tags).tag("state", tagValue(state))
+                    .register(registry));
+        }
+    }
+
+    public void bindHedger(Api api, UpstreamHedger hedger) {
+        add(FunctionCounter.builder("weather.upstream.hedged", hedger, UpstreamHedger::getHedgedCount)
+                .description("Upstream calls sent a second time because the first was slow")
+                .tags(tags).tag("api", tagValue(api))
+                .register(registry));
+        add(FunctionCounter.builder("weather.upstream.hedge.wins", hedger, UpstreamHedger::getHedgeWinCount)
+                .description("Hedged upstream calls answered by the second call")
+                .tags(tags).tag("api", tagValue(api))
+                .register(registry));
+    }
+
+    public void recordUpstream(Api api, Outcome outcome, long nanos) {
+        upstreamTimers[api.ordinal()][outcome.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer parseTimer(Api api) {
+        return parseTimers[api.ordinal()];
+    }
+
+    public void recordLoad(boolean success, long nanos) {
+        (success ? loadSuccessTimer : loadFailureTimer).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPollCycle(long nanos) {
+        pollCycleTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRefreshFailure() {
+        refreshFailures.increment();
+    }
+
+    /**
+     * Removes all meters of this API key from the registry.
+     */
+    public void close() {
+        meters.forEach(registry::remove);
+        meters.clear();
+    }
+
+    private <M extends Meter> M add(M meter) {
+        meters.add(meter);
+        return meter;
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
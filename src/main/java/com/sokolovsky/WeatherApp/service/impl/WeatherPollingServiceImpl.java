@@ -1,80 +1,271 @@
 package com.sokolovsky.WeatherApp.service.impl;
 
 import com.sokolovsky.WeatherApp.service.WeatherPollingService;
+import com.sokolovsky.WeatherApp.service.WeatherRefreshScheduler;
 import com.sokolovsky.WeatherApp.service.WeatherService;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Set;
 
 /**
  * Implementation of automatic weather data polling service.
  * Updates weather data for all cached cities at fixed intervals.
+ * Runs on a shared {@link WeatherRefreshScheduler}: cities of one cycle are refreshed concurrently
+ * on its worker pool, and each refresh is delayed by a random jitter to spread upstream calls
+ * over the interval. The next cycle is scheduled once all refreshes of the current one finished.
+ * Given the cache TTL, the interval is shortened by the jitter, so a city refreshed early in one
+ * cycle and late in the next is still refreshed before its entry expires.
+ * With a popularity tracker and a call budget, cycles run every minute and only refresh the
+ * cities the tracker selects, so hot cities are refreshed often and cold ones rarely or never.
  */
 @Slf4j
 public class WeatherPollingServiceImpl implements WeatherPollingService {
     private final WeatherService weatherService;
-    private final ScheduledExecutorService scheduler;
+    private final WeatherRefreshScheduler scheduler;
+    private final boolean ownsScheduler;
+    private final long maxJitterMillis;
+    private final CityPopularityTracker popularityTracker;
+    private final int callsPerMinute;
+    private final long intervalMillis;
+    private final WeatherMetrics metrics;
     private static final int POLLING_INTERVAL = 10; // minutes
+    private static final int ADAPTIVE_POLLING_INTERVAL = 1; // minutes
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int STOP_TIMEOUT = 60; // seconds
 
+    private final AtomicLong completedCycles = new AtomicLong();
+    private volatile WeatherRefreshScheduler.Registration registration;
+    private volatile long lastCycleDurationMillis;
+    private volatile int lastCycleFailures;
+
+    /**
+     * Creates a polling service with its own scheduler, stopped together with the service.
+     */
     public WeatherPollingServiceImpl(WeatherService weatherService) {
+        this(weatherService, new WeatherRefreshSchedulerImpl(DEFAULT_PARALLELISM), Duration.ZERO, null, null, 0, null,
+            true);
+    }
+
+    /**
+     * @param weatherService Service whose cached cities are refreshed
+     * @param scheduler Shared scheduler running the refreshes
+     * @param maxJitter Upper bound of the random delay before each city refresh,
+     *                  capped at half the polling interval
+     */
+    public WeatherPollingServiceImpl(WeatherService weatherService,
+                                     WeatherRefreshScheduler scheduler,
+                                     Duration maxJitter) {
+        this(weatherService, scheduler, maxJitter, null, null, 0, null, false);
+    }
+
+    /**
+     * @param weatherService Service whose cached cities are refreshed
+     * @param scheduler Shared scheduler running the refreshes
+     * @param maxJitter Upper bound of the random delay before each city refresh,
+     *                  capped at half the polling interval
+     * @param popularityTracker Tracker selecting the cities to refresh
+     * @param callsPerMinute Maximum number of city refreshes per minute, 0 to refresh
+     *                       all cached cities every 10 minutes
+     */
+    public WeatherPollingServiceImpl(WeatherService weatherService,
+                                     WeatherRefreshScheduler scheduler,
+                                     Duration maxJitter,
+                                     CityPopularityTracker popularityTracker,
+                                     int callsPerMinute) {
+        this(weatherService, scheduler, maxJitter, null, popularityTracker, callsPerMinute, null, false);
+    }
+
+    /**
+     * @param weatherService Service whose cached cities are refreshed
+     * @param scheduler Shared scheduler running the refreshes
+     * @param maxJitter Upper bound of the random delay before each city refresh,
+     *                  capped at half the polling interval
+     * @param cacheTtl Time after which cached entries expire, null or zero if they never do
+     * @param popularityTracker Tracker selecting the cities to refresh
+     * @param callsPerMinute Maximum number of city refreshes per minute, 0 to refresh
+     *                       all cached cities every 10 minutes, or more often for a shorter TTL
+     * @param metrics Metrics recording cycle durations and failed refreshes, or null
+     */
+    public WeatherPollingServiceImpl(WeatherService weatherService,
+                                     WeatherRefreshScheduler scheduler,
+                                     Duration maxJitter,
+                                     Duration cacheTtl,
+                                     CityPopularityTracker popularityTracker,
+                                     int callsPerMinute,
+                                     WeatherMetrics metrics) {
+        this(weatherService, scheduler, maxJitter, cacheTtl, popularityTracker, callsPerMinute, metrics, false);
+    }
+
+    private WeatherPollingServiceImpl(WeatherService weatherService,
+                                      WeatherRefreshScheduler scheduler,
+                                      Duration maxJitter,
+                                      Duration cacheTtl,
+                                      CityPopularityTracker popularityTracker,
+                                      int callsPerMinute,
+                                      WeatherMetrics metrics,
+                                      boolean ownsScheduler) {
         this.weatherService = weatherService;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.metrics = metrics;
+        boolean adaptive = popularityTracker != null && callsPerMinute > 0;
+        this.popularityTracker = adaptive ? popularityTracker : null;
+        this.callsPerMinute = callsPerMinute;
+        long interval = TimeUnit.MINUTES.toMillis(adaptive ? ADAPTIVE_POLLING_INTERVAL : POLLING_INTERVAL);
+        long ttl = cacheTtl == null ? 0 : cacheTtl.toMillis();
+        if (!adaptive && ttl > 0) {
+            interval = Math.min(interval, ttl);
+        }
+        long jitter = maxJitter == null ? 0 : maxJitter.toMillis();
+        this.maxJitterMillis = Math.max(0, Math.min(jitter, interval / 2));
+        // The tracker keeps popular cities within the TTL itself, see WeatherServiceImpl#maxRefreshInterval
+        this.intervalMillis = !adaptive && ttl > 0 ? interval - maxJitterMillis : interval;
+    }
+
+    /**
+     * Returns the time between the starts of two update cycles.
+     *
+     * @return Polling interval in milliseconds
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Returns the upper bound of the random delay before each city refresh.
+     *
+     * @return Maximum jitter in milliseconds
+     */
+    public long getMaxJitterMillis() {
+        return maxJitterMillis;
     }
 
     /**
      * Starts scheduled weather data updates.
-     * Updates occur every 10 minutes for all cached cities.
+     * Updates occur every 10 minutes, or within the cache TTL, for all cached cities,
+     * or every minute for the selected cities in adaptive mode.
      */
     public void start() {
-        scheduler.scheduleAtFixedRate(this::updateWeatherData, 
-            0, POLLING_INTERVAL, TimeUnit.MINUTES);
+        registration = scheduler.register();
+        registration.schedule(this::updateWeatherData, 0, TimeUnit.MILLISECONDS);
         log.info("Weather polling service started");
     }
 
     /**
-     * Gracefully stops the polling service.
-     * Ensures all pending tasks are completed or cancelled.
+     * Stops the polling service by deregistering from the scheduler.
+     * Pending refreshes are cancelled, and running ones are waited for up to 60 seconds.
      */
     public void stop() {
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(60, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
+        if (registration != null) {
+            registration.cancel();
+            try {
+                if (!registration.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Weather refreshes still running {} seconds after stopping polling", STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+        }
+        if (ownsScheduler && scheduler instanceof WeatherRefreshSchedulerImpl ownScheduler) {
+            ownScheduler.shutdown();
         }
         log.info("Weather polling service stopped");
     }
 
+    /**
+     * Returns how long the last completed update cycle took.
+     *
+     * @return Duration of the last cycle in milliseconds
+     */
+    public long getLastCycleDurationMillis() {
+        return lastCycleDurationMillis;
+    }
+
+    /**
+     * Returns the number of cities that failed to update in the last completed cycle.
+     *
+     * @return Number of failed city updates
+     */
+    public int getLastCycleFailures() {
+        return lastCycleFailures;
+    }
+
+    /**
+     * Returns the number of update cycles that refreshed all their cities.
+     *
+     * @return Number of completed cycles
+     */
+    public long getCompletedCycles() {
+        return completedCycles.get();
+    }
+
     /**
      * Internal method to update weather data for all cached cities.
      * Handles errors for individual cities without stopping the entire update process.
      */
     private void updateWeatherData() {
+        long start = System.nanoTime();
         try {
             Set<String> cities = weatherService.getCachedCities();
-            if (cities.isEmpty()) {
+            List<String> snapshot = popularityTracker != null
+                    ? popularityTracker.selectDue(cities, callsPerMinute, Duration.ofMillis(intervalMillis))
+                    : List.copyOf(cities);
+            if (snapshot.isEmpty()) {
                 log.debug("No cities in cache to update");
+                scheduleNextCycle(start);
                 return;
             }
 
-            log.debug("Starting weather update for {} cached cities", cities.size());
-            for (String city : cities) {
-                try {
-                    weatherService.updateWeatherData(city);
-                    log.debug("Successfully updated weather data for city: {}", city);
-                } catch (Exception e) {
-                    log.error("Failed to update weather data for city: {}", city, e);
-                }
+            log.debug("Starting weather update for {} of {} cached cities", snapshot.size(), cities.size());
+            AtomicInteger remaining = new AtomicInteger(snapshot.size());
+            AtomicInteger failures = new AtomicInteger();
+            for (String city : snapshot) {
+                long delay = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+                registration.schedule(() -> {
+                    try {
+                        weatherService.updateWeatherData(city);
+                        log.debug("Successfully updated weather data for city: {}", city);
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        if (metrics != null) {
+                            metrics.recordRefreshFailure();
+                        }
+                        log.error("Failed to update weather data for city: {}", city, e);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            completeCycle(start, snapshot.size(), failures.get());
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
             }
-            log.debug("Completed weather update for all cached cities");
         } catch (Exception e) {
             log.error("Error during weather data update", e);
+            scheduleNextCycle(start);
         }
     }
-} 
\ No newline at end of file
+
+    private void completeCycle(long start, int cities, int failures) {
+        long duration = System.nanoTime() - start;
+        lastCycleDurationMillis = duration / 1_000_000;
+        if (metrics != null) {
+            metrics.recordPollCycle(duration);
+        }
+        lastCycleFailures = failures;
+        completedCycles.incrementAndGet();
+        log.info("Weather update for {} cached cities finished in {} ms with {} failures",
+            cities, lastCycleDurationMillis, failures);
+        scheduleNextCycle(start);
+    }
+
+    private void scheduleNextCycle(long cycleStart) {
+        long elapsed = System.nanoTime() - cycleStart;
+        long delay = Math.max(0, TimeUnit.MILLISECONDS.toNanos(intervalMillis) - elapsed);
+        registration.schedule(this::updateWeatherData, delay, TimeUnit.NANOSECONDS);
+    }
+}
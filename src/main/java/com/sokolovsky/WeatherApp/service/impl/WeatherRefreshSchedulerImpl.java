@@ -0,0 +1,162 @@
+package com.sokolovsky.WeatherApp.service.impl;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.service.WeatherRefreshScheduler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide scheduler for background weather refreshes.
+ * All polling services register here instead of owning their own threads.
+ * Due tasks are kept in the delay queue of a {@link ScheduledThreadPoolExecutor},
+ * a heap ordered by next-due time, and run on its bounded worker pool, made of
+ * virtual threads if enabled.
+ */
+@Component
+@Slf4j
+public class WeatherRefreshSchedulerImpl implements WeatherRefreshScheduler {
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<RegistrationImpl> registrations = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public WeatherRefreshSchedulerImpl(WeatherConfig config) {
+        this(config.getPollingParallelism(), config.isVirtualThreads());
+    }
+
+    /**
+     * @param workers Maximum number of refresh tasks running at the same time
+     */
+    public WeatherRefreshSchedulerImpl(int workers) {
+        this(workers, false);
+    }
+
+    /**
+     * @param workers Maximum number of refresh tasks running at the same time
+     * @param virtual Whether the workers are virtual threads, if supported
+     */
+    public WeatherRefreshSchedulerImpl(int workers, boolean virtual) {
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, workers),
+            VirtualThreads.factory("weather-refresh-", virtual));
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Registers a new participant. Tasks scheduled through the registration
+     * are cancelled when it is cancelled.
+     *
+     * @return Registration to schedule tasks with
+     */
+    public Registration register() {
+        RegistrationImpl registration = new RegistrationImpl();
+        registrations.add(registration);
+        return registration;
+    }
+
+    public int getRegistrationCount() {
+        return registrations.size();
+    }
+
+    public int getQueuedTaskCount() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveTaskCount() {
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registrations.forEach(RegistrationImpl::cancel);
+        executor.shutdownNow();
+        log.debug("Weather refresh scheduler stopped");
+    }
+
+    private final class RegistrationImpl implements Registration {
+        private final Set<ScheduledFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger running = new AtomicInteger();
+        private final ReentrantLock idleLock = new ReentrantLock();
+        private final Condition idle = idleLock.newCondition();
+        private volatile boolean cancelled;
+
+        public void schedule(Runnable task, long delay, TimeUnit unit) {
+            if (cancelled) {
+                return;
+            }
+            pending.removeIf(Future::isDone);
+            try {
+                pending.add(executor.schedule(() -> run(task), delay, unit));
+            } catch (RejectedExecutionException e) {
+                log.debug("Refresh task rejected, scheduler is shut down");
+            }
+            if (cancelled) {
+                cancelPending();
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            registrations.remove(this);
+            cancelPending();
+        }
+
+        /**
+         * Waits for the tasks of a cancelled registration that were already running.
+         *
+         * @return false if some were still running after the timeout
+         */
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            idleLock.lock();
+            try {
+                while (running.get() > 0) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = idle.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                idleLock.unlock();
+            }
+        }
+
+        private void run(Runnable task) {
+            // Counted before checking for cancellation, so a task that starts after a waiter
+            // saw no running tasks also sees the cancellation and does not run
+            running.incrementAndGet();
+            try {
+                if (!cancelled) {
+                    task.run();
+                }
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    idleLock.lock();
+                    try {
+                        idle.signalAll();
+                    } finally {
+                        idleLock.unlock();
+                    }
+                }
+            }
+        }
+
+        private void cancelPending() {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+        }
+    }
+}
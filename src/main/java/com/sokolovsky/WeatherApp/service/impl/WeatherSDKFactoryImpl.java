@@ -2,31 +2,73 @@ package com.sokolovsky.WeatherApp.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.service.GeocodeStore;
+import com.sokolovsky.WeatherApp.service.WeatherFetchExecutor;
+import com.sokolovsky.WeatherApp.service.WeatherRefreshScheduler;
 import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
 import com.sokolovsky.WeatherApp.service.WeatherService;
+import com.sokolovsky.WeatherApp.service.WeatherUpdateListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory implementation for creating and managing Weather Service instances.
- * Maintains a cache of service instances per API key.
+ * Maintains a cache of service instances per API key. Update listeners are registered per
+ * API key and attached to every instance created for the key, so they outlive a destroyed
+ * and re-created instance.
  */
 @Component
 public class WeatherSDKFactoryImpl implements WeatherSDKFactory {
     private final Map<String, WeatherService> instances = new ConcurrentHashMap<>();
+    private final Map<String, Set<WeatherUpdateListener>> updateListeners = new ConcurrentHashMap<>();
     private final WeatherConfig config;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final GeocodeStore geocodeStore;
+    private final WeatherRefreshScheduler refreshScheduler;
+    private final WeatherFetchExecutor fetchExecutor;
+    private final MeterRegistry meterRegistry;
 
     public WeatherSDKFactoryImpl(WeatherConfig config,
                                  RestTemplate restTemplate,
-                                 ObjectMapper objectMapper) {
+                                 ObjectMapper objectMapper,
+                                 GeocodeStore geocodeStore,
+                                 WeatherRefreshScheduler refreshScheduler,
+                                 WeatherFetchExecutor fetchExecutor) {
+        this(config, restTemplate, objectMapper, geocodeStore, refreshScheduler, fetchExecutor,
+            new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param meterRegistry Registry receiving the live instance count and the metrics of each instance
+     */
+    @Autowired
+    public WeatherSDKFactoryImpl(WeatherConfig config,
+                                 RestTemplate restTemplate,
+                                 ObjectMapper objectMapper,
+                                 GeocodeStore geocodeStore,
+                                 WeatherRefreshScheduler refreshScheduler,
+                                 WeatherFetchExecutor fetchExecutor,
+                                 MeterRegistry meterRegistry) {
         this.config = config;
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.geocodeStore = geocodeStore;
+        this.refreshScheduler = refreshScheduler;
+        this.fetchExecutor = fetchExecutor;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("weather.sdk.instances", instances, Map::size)
+                .description("Live weather service instances, one per API key")
+                .register(meterRegistry);
     }
 
     /**
@@ -41,13 +83,17 @@ public class WeatherSDKFactoryImpl implements WeatherSDKFactory {
             throw new IllegalArgumentException("API key must not be empty");
         }
         
-        return instances.computeIfAbsent(apiKey, 
-            k -> new WeatherServiceImpl(restTemplate, objectMapper, config, k));
+        return instances.computeIfAbsent(apiKey, k -> {
+            WeatherService service = new WeatherServiceImpl(restTemplate, objectMapper, config, k, geocodeStore,
+                refreshScheduler, fetchExecutor, meterRegistry);
+            updateListeners.getOrDefault(k, Set.of()).forEach(service::addUpdateListener);
+            return service;
+        });
     }
 
     /**
      * Destroys the Weather Service instance for the given API key.
-     * Cleans up resources and removes from cache.
+     * Cleans up resources, deregisters it from the refresh scheduler and removes from cache.
      *
      * @param apiKey API key of the service to destroy
      */
@@ -57,4 +103,45 @@ public class WeatherSDKFactoryImpl implements WeatherSDKFactory {
             service.shutdown();
         }
     }
+
+    /**
+     * Registers a listener for the weather updates of the service of an API key,
+     * now and of every instance created for the key after it was destroyed.
+     *
+     * @param apiKey API key of the service
+     * @param listener Listener to add
+     */
+    public void addUpdateListener(String apiKey, WeatherUpdateListener listener) {
+        updateListeners.computeIfAbsent(apiKey, k -> ConcurrentHashMap.newKeySet()).add(listener);
+        instances.computeIfPresent(apiKey, (k, service) -> {
+            service.addUpdateListener(listener);
+            return service;
+        });
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addUpdateListener}.
+     *
+     * @param apiKey API key of the service
+     * @param listener Listener to remove
+     */
+    public void removeUpdateListener(String apiKey, WeatherUpdateListener listener) {
+        updateListeners.computeIfPresent(apiKey, (k, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+        WeatherService service = instances.get(apiKey);
+        if (service != null) {
+            service.removeUpdateListener(listener);
+        }
+    }
+
+    /**
+     * Shuts down all Weather Service instances when the application stops,
+     * letting each save its cache snapshot if enabled.
+     */
+    @PreDestroy
+    public void shutdown() {
+        instances.keySet().forEach(this::destroySDK);
+    }
 } 
\ No newline at end of file
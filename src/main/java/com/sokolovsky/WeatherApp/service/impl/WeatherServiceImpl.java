@@ -1,86 +1,509 @@
 package com.sokolovsky.WeatherApp.service.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.dto.Coordinates;
 import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
 import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherHistoryDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.exception.CircuitOpenException;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
 import com.sokolovsky.WeatherApp.exception.WeatherApiException;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sokolovsky.WeatherApp.service.GeocodeStore;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+import com.sokolovsky.WeatherApp.service.WeatherFetchExecutor;
 import com.sokolovsky.WeatherApp.service.WeatherPollingService;
+import com.sokolovsky.WeatherApp.service.WeatherRefreshScheduler;
 import com.sokolovsky.WeatherApp.service.WeatherService;
+import com.sokolovsky.WeatherApp.service.WeatherUpdateListener;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamRateLimiter.Priority;
+import com.sokolovsky.WeatherApp.service.impl.WeatherMetrics.Api;
+import com.sokolovsky.WeatherApp.service.impl.WeatherMetrics.Outcome;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Service;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.ResponseExtractor;
 
-import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
 import java.util.Set;
 
 /**
  * Core implementation of the Weather Service with caching and polling capabilities.
+ * Instances are created per API key by {@link WeatherSDKFactoryImpl}, which keeps a single
+ * instance per key, so only one service polls a key and writes its cache snapshot.
  */
-@Service
 @Slf4j
 public class WeatherServiceImpl implements WeatherService {
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final ObjectReader weatherReader;
+    private final ObjectReader locationsReader;
+    private final ObjectWriter weatherWriter;
+    private final long freshnessMillis;
     private final WeatherConfig config;
     private final String apiKey;
-    private final Cache<String, WeatherDTO> cache;
+    private final WeatherCache cache;
+    private final ExecutorService refreshExecutor;
+    private final EvictionStatsCounter cacheStatsCounter = new EvictionStatsCounter();
+    private final Cache<String, Coordinates> geoCache;
+    private final GeocodeStore geocodeStore;
     private final WeatherPollingService pollingService;
+    private final CityPopularityTracker popularityTracker;
+    private final UpstreamRateLimiter rateLimiter;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final ExecutorService hedgeExecutor;
+    private final UpstreamHedger geoHedger;
+    private final UpstreamHedger weatherHedger;
+    private final Cache<String, RenderedWeather> lastKnown;
+    private final WeatherFetchExecutor fetchExecutor;
+    private final boolean ownsFetchExecutor;
+    private final Map<String, CompletableFuture<RenderedWeather>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Coordinates>> geoInFlight = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<WeatherUpdateListener> updateListeners = new CopyOnWriteArrayList<>();
+    private final WeatherHistory history;
+    private final WeatherMetrics metrics;
+    private final WeatherCacheSnapshotFile snapshotFile;
+    private final WeatherRefreshScheduler.Registration snapshotRegistration;
+    private static final int DEFAULT_FETCH_THREADS = 4;
 
     public WeatherServiceImpl(RestTemplate restTemplate,
                               ObjectMapper objectMapper,
                               WeatherConfig config,
                               String apiKey) {
+        this(restTemplate, objectMapper, config, apiKey, null, null, null);
+    }
+
+    /**
+     * @param geocodeStore Persistent store of resolved locations, or null to keep them in memory only
+     * @param refreshScheduler Shared scheduler for polling, or null to let the polling service own one
+     * @param fetchExecutor Shared pool for asynchronous fetches, or null to own a small one
+     */
+    public WeatherServiceImpl(RestTemplate restTemplate,
+                              ObjectMapper objectMapper,
+                              WeatherConfig config,
+                              String apiKey,
+                              GeocodeStore geocodeStore,
+                              WeatherRefreshScheduler refreshScheduler,
+                              WeatherFetchExecutor fetchExecutor) {
+        this(restTemplate, objectMapper, config, apiKey, geocodeStore, refreshScheduler, fetchExecutor, null);
+    }
+
+    /**
+     * @param geocodeStore Persistent store of resolved locations, or null to keep them in memory only
+     * @param refreshScheduler Shared scheduler for polling, or null to let the polling service own one
+     * @param fetchExecutor Shared pool for asynchronous fetches, or null to own a small one
+     * @param meterRegistry Registry to publish the metrics of this API key to, or null to not publish them
+     * @throws IllegalArgumentException if the API key is null or blank
+     */
+    public WeatherServiceImpl(RestTemplate restTemplate,
+                              ObjectMapper objectMapper,
+                              WeatherConfig config,
+                              String apiKey,
+                              GeocodeStore geocodeStore,
+                              WeatherRefreshScheduler refreshScheduler,
+                              WeatherFetchExecutor fetchExecutor,
+                              MeterRegistry meterRegistry) {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("API key must be provided");
+        }
         this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+        this.weatherReader = objectMapper.readerFor(WeatherDTO.class);
+        this.locationsReader = objectMapper.readerFor(new TypeReference<List<GeocodingDTO>>() {});
+        this.weatherWriter = objectMapper.writerFor(WeatherDTO.class).without(SerializationFeature.INDENT_OUTPUT);
+        this.freshnessMillis = freshness(config).toMillis();
         this.config = config;
         this.apiKey = apiKey;
-        this.cache = Caffeine.newBuilder()
-                .maximumSize(10)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .removalListener((key, value, cause) -> 
-                    log.debug("Removed from cache: {} due to {}", key, cause))
-                .evictionListener((key, value, cause) -> 
-                    log.debug("Evicted from cache: {} due to {}", key, cause))
-                .build();
-                
+        this.popularityTracker = config.getMode() == WeatherConfig.Mode.POLLING
+                && config.getPollingCallsPerMinute() > 0
+                ? new CityPopularityTracker(config.getPollingPopularityHalfLife(), maxRefreshInterval(config))
+                : null;
+        this.rateLimiter = config.getRateLimitCallsPerMinute() > 0
+                ? new UpstreamRateLimiter(config.getRateLimitCallsPerMinute(),
+                    config.getRateLimitBurst() > 0 ? config.getRateLimitBurst() : config.getRateLimitCallsPerMinute(),
+                    config.getRateLimitBackgroundReserve())
+                : null;
+        this.circuitBreaker = config.getCircuitBreakerFailureThreshold() > 0
+                ? new UpstreamCircuitBreaker(config.getCircuitBreakerFailureThreshold(),
+                    config.getCircuitBreakerOpenDuration(), config.getCircuitBreakerMaxOpenDuration())
+                : null;
+        // Hedged attempts only wait on upstream, so they get a thread each, two per hedged call
+        this.hedgeExecutor = config.isHedgeEnabled()
+                ? VirtualThreads.newThreadPerTaskExecutor("weather-upstream-", config.isVirtualThreads())
+                : null;
+        this.geoHedger = hedgeExecutor != null ? newHedger(config, hedgeExecutor) : null;
+        this.weatherHedger = hedgeExecutor != null ? newHedger(config, hedgeExecutor) : null;
+        this.lastKnown = circuitBreaker != null || (rateLimiter != null
+                && config.getRateLimitOnExhausted() == WeatherConfig.RateLimitMode.SERVE_STALE)
+                ? buildLastKnownCache(config)
+                : null;
+        this.refreshExecutor = isRefreshAhead(config) && config.getCacheBackend() != WeatherConfig.CacheBackend.OFF_HEAP
+                ? Executors.newFixedThreadPool(Math.max(1, config.getCacheRefreshThreads()),
+                    VirtualThreads.factory("weather-refresh-ahead-", config.isVirtualThreads()))
+                : null;
+        this.history = config.getHistorySize() > 0
+                ? new WeatherHistory(config.getHistorySize(), config.getHistoryMaxCities())
+                : null;
+        this.cache = buildCache(config);
+        this.geoCache = buildGeoCache(config);
+        this.geocodeStore = geocodeStore;
+        this.metrics = new WeatherMetrics(meterRegistry != null ? meterRegistry : new CompositeMeterRegistry(),
+            apiKeyHash(apiKey));
+        bindMetrics();
+        this.ownsFetchExecutor = fetchExecutor == null;
+        this.fetchExecutor = ownsFetchExecutor ? new WeatherFetchExecutorImpl(DEFAULT_FETCH_THREADS) : fetchExecutor;
+        this.snapshotFile = snapshotFile(config, apiKey);
+        if (snapshotFile != null) {
+            Duration ttl = config.getCacheTtl();
+            snapshotFile.load(ttl != null ? ttl.toMillis() : 0, this::restore);
+        }
+        this.snapshotRegistration = snapshotFile != null && refreshScheduler != null
+                && config.getCacheSnapshotInterval() != null && !config.getCacheSnapshotInterval().isZero()
+                ? refreshScheduler.register()
+                : null;
+        if (snapshotRegistration != null) {
+            scheduleSnapshot();
+        }
+
         if (config.getMode() == WeatherConfig.Mode.POLLING) {
-            this.pollingService = new WeatherPollingServiceImpl(this);
+            this.pollingService = refreshScheduler != null
+                    ? new WeatherPollingServiceImpl(this, refreshScheduler, config.getPollingMaxJitter(),
+                        config.getCacheTtl(), popularityTracker, config.getPollingCallsPerMinute(), metrics)
+                    : new WeatherPollingServiceImpl(this);
             this.pollingService.start();
         } else {
             this.pollingService = null;
         }
     }
 
-    @PostConstruct
-    public void validateApiKey() {
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IllegalStateException("API key must be provided");
+    private static UpstreamHedger newHedger(WeatherConfig config, ExecutorService executor) {
+        return new UpstreamHedger(executor, config.getHedgePercentile(), config.getHedgeMinDelay(),
+            config.getHedgeMaxRate());
+    }
+
+    /**
+     * Returns the snapshot file of the cache of the given API key, named after a hash of the key
+     * so several keys can share the directory without the key ending up on disk.
+     */
+    private static WeatherCacheSnapshotFile snapshotFile(WeatherConfig config, String apiKey) {
+        String dir = config.getCacheSnapshotDir();
+        if (dir == null || dir.isBlank() || apiKey == null) {
+            return null;
+        }
+        return new WeatherCacheSnapshotFile(Path.of(dir, "weather-cache-" + apiKeyHash(apiKey) + ".bin"));
+    }
+
+    /**
+     * Returns a short hash identifying an API key in file names and metrics without revealing it.
+     */
+    static String apiKeyHash(String apiKey) {
+        if (apiKey == null) {
+            return "none";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void bindMetrics() {
+        metrics.bindCache(cache, cacheStatsCounter);
+        if (rateLimiter != null) {
+            metrics.bindRateLimiter(rateLimiter);
+        }
+        if (circuitBreaker != null) {
+            metrics.bindCircuitBreaker(circuitBreaker);
+        }
+        if (geoHedger != null) {
+            metrics.bindHedger(Api.GEO, geoHedger);
+            metrics.bindHedger(Api.WEATHER, weatherHedger);
+        }
+    }
+
+    private void restore(String city, RenderedWeather weather) {
+        cache.put(city, weather);
+        if (lastKnown != null) {
+            lastKnown.put(city, weather);
+        }
+    }
+
+    private void scheduleSnapshot() {
+        snapshotRegistration.schedule(() -> {
+            saveSnapshot();
+            scheduleSnapshot();
+        }, config.getCacheSnapshotInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the cache to its snapshot file. Failures are logged and do not affect the service.
+     */
+    private void saveSnapshot() {
+        try {
+            int saved = snapshotFile.save(cache);
+            log.debug("Saved {} cached cities to {}", saved, snapshotFile.getFile());
+        } catch (IOException e) {
+            log.warn("Failed to save weather cache snapshot {}", snapshotFile.getFile(), e);
+        }
+    }
+
+    /**
+     * Longest time between two popularity-driven refreshes: one polling tick and the refresh
+     * jitter less than the TTL, so a city worth keeping is refreshed before it expires.
+     */
+    private static Duration maxRefreshInterval(WeatherConfig config) {
+        Duration ttl = config.getCacheTtl();
+        if (ttl == null || ttl.isZero()) {
+            return Duration.ofMinutes(10);
+        }
+        Duration jitter = config.getPollingMaxJitter() == null ? Duration.ZERO : config.getPollingMaxJitter();
+        Duration interval = ttl.minusMinutes(1).minus(jitter);
+        return interval.isNegative() || interval.isZero() ? ttl.dividedBy(2) : interval;
+    }
+
+    /**
+     * How long clients may reuse fetched data: until it is refreshed in refresh-ahead mode,
+     * otherwise until it expires. Zero if entries never expire.
+     */
+    private static Duration freshness(WeatherConfig config) {
+        if (isRefreshAhead(config)) {
+            return config.getCacheRefreshAfter();
+        }
+        Duration ttl = config.getCacheTtl();
+        return ttl != null ? ttl : Duration.ZERO;
+    }
+
+    private static boolean isRefreshAhead(WeatherConfig config) {
+        Duration refreshAfter = config.getCacheRefreshAfter();
+        return refreshAfter != null && !refreshAfter.isZero();
+    }
+
+    /**
+     * Builds the weather cache from the configured policy.
+     * Misses are loaded by {@link #loadWeatherData}, which records loads through the shared
+     * stats counter. In refresh-ahead mode entries older than the refresh age are served as is
+     * and reloaded in the background until the TTL drops them.
+     * The off-heap backend only supports a size bound and expiry after write.
+     */
+    private WeatherCache buildCache(WeatherConfig config) {
+        if (config.getCacheBackend() == WeatherConfig.CacheBackend.OFF_HEAP) {
+            return buildOffHeapCache(config);
+        }
+        Caffeine<String, RenderedWeather> builder = Caffeine.newBuilder()
+                .recordStats(() -> cacheStatsCounter)
+                .removalListener((String key, RenderedWeather value, RemovalCause cause) ->
+                    log.debug("Removed from cache: {} due to {}", key, cause))
+                // Runs synchronously with the eviction, so it cannot drop data recorded by a later fetch
+                .evictionListener((String key, RenderedWeather value, RemovalCause cause) -> {
+                    log.debug("Evicted from cache: {} due to {}", key, cause);
+                    forgetCity(key, cause);
+                });
+
+        if (config.getCacheMaxWeightBytes() > 0) {
+            builder.maximumWeight(config.getCacheMaxWeightBytes())
+                    .weigher(WeatherServiceImpl::estimateEntryBytes);
+        } else if (config.getCacheMaxSize() > 0) {
+            builder.maximumSize(config.getCacheMaxSize());
+        }
+
+        Duration ttl = config.getCacheTtl();
+        if (ttl != null && !ttl.isZero()) {
+            builder.expireAfter(new FetchTimeExpiry(ttl, config.getCacheExpiry()));
+        }
+
+        if (refreshExecutor == null) {
+            return new CaffeineWeatherCache(builder.build());
+        }
+        Duration refreshAfter = config.getCacheRefreshAfter();
+        if (ttl != null && !ttl.isZero() && refreshAfter.compareTo(ttl) >= 0) {
+            throw new IllegalStateException("weather.cache.refresh-after must be shorter than weather.cache.ttl");
+        }
+        return new CaffeineWeatherCache(builder.refreshAfterWrite(refreshAfter)
+                .executor(refreshExecutor)
+                .build(new CacheLoader<String, RenderedWeather>() {
+                    @Override
+                    public RenderedWeather load(String city) {
+                        return reload(city, null);
+                    }
+
+                    @Override
+                    public RenderedWeather reload(String city, RenderedWeather previous) {
+                        log.debug("Refreshing weather data in background for city: {}", city);
+                        return reloadWeatherData(city, previous);
+                    }
+                }));
+    }
+
+    /**
+     * Expires entries a TTL after their data was fetched rather than after they were put,
+     * so entries restored from a snapshot keep only their remaining TTL.
+     * In ACCESS mode a read extends an entry by the TTL, but never beyond its fetch time
+     * plus the TTL, so a frequently read entry whose refreshes fail is still dropped.
+     */
+    private record FetchTimeExpiry(Duration ttl, WeatherConfig.CacheExpiry mode)
+            implements Expiry<String, RenderedWeather> {
+
+        @Override
+        public long expireAfterCreate(String city, RenderedWeather weather, long currentTime) {
+            long ageNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - weather.fetchedAtMillis());
+            return Math.max(0, ttl.toNanos() - Math.max(0, ageNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String city, RenderedWeather weather, long currentTime, long currentDuration) {
+            return expireAfterCreate(city, weather, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String city, RenderedWeather weather, long currentTime, long currentDuration) {
+            return mode == WeatherConfig.CacheExpiry.ACCESS
+                    ? Math.min(ttl.toNanos(), expireAfterCreate(city, weather, currentTime))
+                    : currentDuration;
+        }
+    }
+
+    private WeatherCache buildOffHeapCache(WeatherConfig config) {
+        if (isRefreshAhead(config)) {
+            throw new IllegalStateException("weather.cache.refresh-after is not supported by the OFF_HEAP cache backend");
+        }
+        if (config.getCacheMaxSize() <= 0 || config.getCacheMaxSize() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("weather.cache.max-size must be set for the OFF_HEAP cache backend");
+        }
+        return new OffHeapWeatherCache((int) config.getCacheMaxSize(), config.getCacheTtl(), cacheStatsCounter,
+            popularityTracker != null || history != null ? this::forgetCity : null);
+    }
+
+    /**
+     * Drops the popularity of a city whose cache entry was evicted, and its history if the
+     * entry was evicted for size. An expired city keeps its history, which is bounded by
+     * the maximum number of cities on its own.
+     */
+    private void forgetCity(String city, RemovalCause cause) {
+        if (popularityTracker != null) {
+            popularityTracker.forget(city);
+        }
+        if (history != null && cause == RemovalCause.SIZE) {
+            history.forget(city);
         }
-        log.info("Weather service initialized with API key");
+    }
+
+    /**
+     * Roughly estimates the heap footprint of a cache entry in bytes.
+     */
+    private static int estimateEntryBytes(String city, RenderedWeather entry) {
+        int bytes = 64 + estimateStringBytes(city);
+        bytes += 48 + entry.json().length + estimateStringBytes(entry.etag()); // rendering
+        bytes += 80; // snapshot, condition strings are interned
+        return bytes + estimateStringBytes(entry.snapshot().name());
+    }
+
+    private static int estimateStringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    /**
+     * Builds the cache of last known values, which keeps entries past the weather cache TTL
+     * so they can be served when the rate limit or the circuit breaker does not allow an upstream call.
+     */
+    private static Cache<String, RenderedWeather> buildLastKnownCache(WeatherConfig config) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (config.getCacheMaxSize() > 0) {
+            builder.maximumSize(config.getCacheMaxSize());
+        }
+        return builder.build();
+    }
+
+    private static Cache<String, Coordinates> buildGeoCache(WeatherConfig config) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (config.getGeoCacheMaxSize() > 0) {
+            builder.maximumSize(config.getGeoCacheMaxSize());
+        }
+        Duration ttl = config.getGeoCacheTtl();
+        if (ttl != null && !ttl.isZero()) {
+            builder.expireAfterWrite(ttl);
+        }
+        return builder.build();
     }
 
     /**
      * Gracefully shuts down the service and clears cache.
      * If polling is enabled, stops the polling service.
+     * If snapshots are enabled, saves the cache before clearing it.
      */
     public void shutdown() {
         if (pollingService != null) {
             pollingService.stop();
         }
+        if (snapshotRegistration != null) {
+            snapshotRegistration.cancel();
+        }
+        if (snapshotFile != null) {
+            saveSnapshot();
+        }
+        updateListeners.clear();
         cache.invalidateAll();
+        geoCache.invalidateAll();
+        if (lastKnown != null) {
+            lastKnown.invalidateAll();
+        }
+        if (history != null) {
+            history.clear();
+        }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+        if (ownsFetchExecutor && fetchExecutor instanceof WeatherFetchExecutorImpl ownExecutor) {
+            ownExecutor.shutdown();
+        }
+        metrics.close();
     }
 
     /**
      * Gets weather data for a specified city.
      * First checks the cache, if not found or expired, fetches from API.
+     * Concurrent misses for the same city share a single upstream fetch.
+     * When the rate limit is exhausted and configured to serve stale data, or the circuit
+     * breaker is open, the last known value is returned even if it has expired.
      *
      * @param city Name of the city
      * @return Weather data for the city
@@ -88,74 +511,563 @@ public class WeatherServiceImpl implements WeatherService {
      */
     public WeatherDTO getWeatherData(String city) {
         String trimmedCity = city.trim();
+        RenderedWeather cached = lookupCache(trimmedCity);
+        if (cached != null) {
+            return cached.weather();
+        }
+
+        try {
+            RenderedWeather loaded = loadWeatherData(trimmedCity, true, Priority.ON_DEMAND);
+            recordAccess(trimmedCity);
+            return loaded.weather();
+        } catch (RateLimitExceededException | CircuitOpenException e) {
+            return serveStale(trimmedCity, e).weather();
+        }
+    }
 
-        WeatherDTO cached = cache.getIfPresent(trimmedCity);
+    /**
+     * Gets weather data for a specified city without blocking the calling thread.
+     * Cache hits complete immediately, misses are fetched on the shared fetch executor
+     * and share in-flight fetches with synchronous callers.
+     *
+     * @param city Name of the city
+     * @return Future completed with weather data for the city, or with
+     *         a {@link WeatherApiException} if city not found or API error occurs
+     */
+    public CompletableFuture<WeatherDTO> getWeatherDataAsync(String city) {
+        return getRenderedWeatherAsync(city).thenApply(RenderedWeather::weather);
+    }
+
+    /**
+     * Gets weather data for a specified city together with its compact JSON rendering and entity tag,
+     * without blocking the calling thread. Cache hits complete immediately with the rendering made
+     * when the data was fetched.
+     *
+     * @param city Name of the city
+     * @return Future completed with the rendered weather of the city, or with
+     *         a {@link WeatherApiException} if city not found or API error occurs
+     */
+    public CompletableFuture<RenderedWeather> getRenderedWeatherAsync(String city) {
+        String trimmedCity = city.trim();
+        RenderedWeather cached = lookupCache(trimmedCity);
         if (cached != null) {
-            log.debug("Cache hit for city: {}", trimmedCity);
-            return cached;
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return loadWeatherDataAsync(trimmedCity).thenApply(loaded -> {
+            recordAccess(trimmedCity);
+            return loaded;
+        }).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RateLimitExceededException || cause instanceof CircuitOpenException) {
+                return serveStale(trimmedCity, (WeatherApiException) cause);
+            }
+            throw cause instanceof WeatherApiException apiException
+                    ? apiException
+                    : new WeatherApiException("Failed to get weather data for city: " + trimmedCity, cause);
+        });
+    }
+
+    private RenderedWeather lookupCache(String city) {
+        RenderedWeather cached = cache.getIfPresent(city);
+        if (cached != null) {
+            log.debug("Cache hit for city: {}", city);
+            recordAccess(city);
+        }
+        return cached;
+    }
+
+    /**
+     * Counts a request towards the popularity of a city. Only cache hits and successful loads
+     * are counted, so requests for unknown cities never add to the tracker.
+     */
+    private void recordAccess(String city) {
+        if (popularityTracker != null) {
+            popularityTracker.recordAccess(city);
+        }
+    }
+
+    /**
+     * Returns the last known weather of a city, marked stale and already expired for clients,
+     * if upstream could not be called for the given reason and stale data may be served for it.
+     *
+     * @throws WeatherApiException the given exception if there is no stale data to serve
+     */
+    private RenderedWeather serveStale(String city, WeatherApiException e) {
+        boolean allowed = e instanceof CircuitOpenException
+                || config.getRateLimitOnExhausted() == WeatherConfig.RateLimitMode.SERVE_STALE;
+        RenderedWeather stale = allowed && lastKnown != null ? lastKnown.getIfPresent(city) : null;
+        if (stale == null) {
+            throw e;
+        }
+        log.debug("{}, serving stale data for city: {}", e.getMessage(), city);
+        return stale.asStale();
+    }
+
+    /**
+     * Loads weather data so that only one upstream fetch per city runs at a time.
+     * Callers arriving while a fetch is in flight wait for it and share its result.
+     * Failures are propagated to every waiter and are never cached.
+     *
+     * @param city Name of the city
+     * @param useCache Whether a value cached by a just-finished fetch may be returned
+     * @param priority Rate limiter priority of the upstream calls
+     * @return Weather data for the city
+     * @throws WeatherApiException if city not found or API error occurs
+     */
+    private RenderedWeather loadWeatherData(String city, boolean useCache, Priority priority) {
+        CompletableFuture<RenderedWeather> flight = new CompletableFuture<>();
+        CompletableFuture<RenderedWeather> existing = inFlight.putIfAbsent(city, flight);
+        if (existing != null) {
+            log.debug("Joining in-flight fetch for city: {}", city);
+            return awaitFlight(existing, city);
         }
+        return runFlight(city, useCache, priority, flight);
+    }
 
-        return fetchWeatherData(trimmedCity);
+    /**
+     * Asynchronous counterpart of {@link #loadWeatherData} for on-demand requests.
+     * Joins the in-flight fetch of the city, or starts one on the fetch executor.
+     */
+    private CompletableFuture<RenderedWeather> loadWeatherDataAsync(String city) {
+        CompletableFuture<RenderedWeather> flight = new CompletableFuture<>();
+        CompletableFuture<RenderedWeather> existing = inFlight.putIfAbsent(city, flight);
+        if (existing != null) {
+            log.debug("Joining in-flight fetch for city: {}", city);
+            return existing;
+        }
+        try {
+            fetchExecutor.execute(() -> {
+                try {
+                    runFlight(city, true, Priority.ON_DEMAND, flight);
+                } catch (RuntimeException e) {
+                    // Delivered to the callers through the flight
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(city, flight);
+            flight.completeExceptionally(new WeatherApiException("Weather service is shutting down", e));
+        }
+        return flight;
     }
 
-    private WeatherDTO fetchWeatherData(String city) {
+    /**
+     * Background reload of a refresh-ahead entry. Joins the in-flight fetch of the city if there
+     * is one, so a reload and a concurrent miss or poll share a single upstream fetch.
+     * Caffeine stores the returned value and records the reload in the cache statistics.
+     */
+    private RenderedWeather reloadWeatherData(String city, RenderedWeather previous) {
+        CompletableFuture<RenderedWeather> flight = new CompletableFuture<>();
+        CompletableFuture<RenderedWeather> existing = inFlight.putIfAbsent(city, flight);
+        if (existing != null) {
+            log.debug("Joining in-flight fetch for city: {}", city);
+            return awaitFlight(existing, city);
+        }
         try {
-            String geoUrl = String.format("%s?q=%s&limit=1&appid=%s", 
-                config.getGeoUrl(), city, apiKey);
-            String geoResponse = restTemplate.getForObject(geoUrl, String.class);
-            log.debug("Geo API response: {}", geoResponse);
+            RenderedWeather refreshed = render(fetchWeatherData(city, Priority.BACKGROUND));
+            recordRefresh(city, previous, refreshed);
+            flight.complete(refreshed);
+            return refreshed;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(city, flight);
+        }
+    }
 
-            if (geoResponse == null || geoResponse.equals("[]")) {
-                throw new WeatherApiException("City not found: " + city);
+    private RenderedWeather runFlight(String city, boolean useCache, Priority priority,
+                                      CompletableFuture<RenderedWeather> flight) {
+        long start = System.nanoTime();
+        try {
+            RenderedWeather cached = useCache ? cache.peek(city) : null;
+            if (cached != null) {
+                flight.complete(cached);
+                return cached;
             }
+            RenderedWeather result = render(fetchWeatherData(city, priority));
+            cacheStatsCounter.recordLoadSuccess(System.nanoTime() - start);
+            metrics.recordLoad(true, System.nanoTime() - start);
+            RenderedWeather previous = cache.put(city, result);
+            recordRefresh(city, previous, result);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            cacheStatsCounter.recordLoadFailure(System.nanoTime() - start);
+            metrics.recordLoad(false, System.nanoTime() - start);
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(city, flight);
+        }
+    }
 
-            GeocodingDTO location = objectMapper.readValue(geoResponse,
-                new TypeReference<List<GeocodingDTO>>() {})
-                .stream()
-                .findFirst()
-                .orElseThrow(() -> new WeatherApiException("Failed to parse location data for city: " + city));
+    /**
+     * Renders fetched weather data once as compact JSON with an entity tag derived from
+     * the observation time and the rendered content. The DTO is only kept as a flat snapshot.
+     */
+    private RenderedWeather render(WeatherDTO weather) {
+        byte[] json;
+        try {
+            json = weatherWriter.writeValueAsBytes(weather);
+        } catch (JsonProcessingException e) {
+            throw new WeatherApiException("Failed to render weather data", e);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(json);
+        WeatherSnapshot snapshot = WeatherSnapshot.of(weather);
+        String etag = "\"" + Long.toHexString(snapshot.datetime()) + "-" + Long.toHexString(checksum.getValue()) + "\"";
+        long now = System.currentTimeMillis();
+        return new RenderedWeather(snapshot, json, etag, now, freshnessMillis > 0 ? now + freshnessMillis : 0);
+    }
 
-            String weatherUrl = String.format("%s?lat=%s&lon=%s&appid=%s&units=metric", 
-                config.getWeatherUrl(), location.getLat(), location.getLon(), apiKey);
-            
+    private void recordRefresh(String city, RenderedWeather previous, RenderedWeather entry) {
+        if (popularityTracker != null) {
+            popularityTracker.recordRefresh(city);
+        }
+        if (lastKnown != null) {
+            lastKnown.put(city, entry);
+        }
+        if (history != null) {
+            history.record(city, entry.snapshot());
+        }
+        if (!updateListeners.isEmpty() && (previous == null || !entry.snapshot().equals(previous.snapshot()))) {
+            WeatherDTO weather = entry.weather();
+            for (WeatherUpdateListener listener : updateListeners) {
+                try {
+                    listener.onUpdate(city, weather);
+                } catch (RuntimeException e) {
+                    log.error("Weather update listener failed for city: {}", city, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a rate limiter token for one upstream call. On-demand calls wait for a token
+     * when configured to, background calls never wait.
+     *
+     * @throws RateLimitExceededException if no token is available
+     */
+    private void acquirePermit(Priority priority) {
+        if (rateLimiter == null) {
+            return;
+        }
+        boolean granted;
+        if (priority == Priority.ON_DEMAND
+                && config.getRateLimitOnExhausted() == WeatherConfig.RateLimitMode.WAIT) {
             try {
-                String weatherResponse = restTemplate.getForObject(weatherUrl, String.class);
-                if (weatherResponse == null) {
-                    throw new WeatherApiException("Failed to get weather data for city: " + city);
+                granted = rateLimiter.acquire(priority, config.getRateLimitMaxWait());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                granted = false;
+            }
+        } else {
+            granted = rateLimiter.tryAcquire(priority);
+        }
+        if (!granted) {
+            throw new RateLimitExceededException("Upstream rate limit exceeded");
+        }
+    }
+
+    /**
+     * Makes an upstream call, hedged with the given hedger if hedging is enabled.
+     * Hedged attempts are background calls, so they never wait for or use the on-demand share
+     * of the rate limit, and are only made while the circuit breaker is closed.
+     */
+    private <T> T callUpstream(UpstreamHedger hedger, Api api, String url, ObjectReader reader, String parseError,
+                               Priority priority) {
+        if (hedger == null) {
+            return attemptUpstream(api, url, reader, parseError, priority);
+        }
+        return hedger.call(
+            () -> attemptUpstream(api, url, reader, parseError, priority),
+            () -> attemptUpstream(api, url, reader, parseError, Priority.BACKGROUND),
+            () -> circuitBreaker == null || circuitBreaker.getState() == UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * Makes one upstream call through the circuit breaker and the rate limiter and reads its body.
+     * Client errors other than 429 count as answered calls for the breaker: upstream is up,
+     * it refused the request. Attempts cancelled by hedging count as neither.
+     *
+     * @throws CircuitOpenException if the circuit breaker is open
+     * @throws RateLimitExceededException if no rate limiter token is available
+     */
+    private <T> T attemptUpstream(Api api, String url, ObjectReader reader, String parseError, Priority priority) {
+        long permit = circuitBreaker != null ? circuitBreaker.tryAcquire() : 0;
+        if (permit == UpstreamCircuitBreaker.REJECTED) {
+            throw new CircuitOpenException("Upstream unavailable, circuit breaker is open");
+        }
+        try {
+            acquirePermit(priority);
+        } catch (RuntimeException e) {
+            if (circuitBreaker != null) {
+                circuitBreaker.release(permit);
+            }
+            throw e;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = restTemplate.execute(url, HttpMethod.GET, null,
+                readBody(reader, parseError, metrics.parseTimer(api)));
+            metrics.recordUpstream(api, Outcome.SUCCESS, System.nanoTime() - start);
+            recordUpstreamOutcome(permit, true);
+            return result;
+        } catch (HttpClientErrorException e) {
+            metrics.recordUpstream(api, Outcome.CLIENT_ERROR, System.nanoTime() - start);
+            recordUpstreamOutcome(permit, e.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS);
+            throw e;
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                metrics.recordUpstream(api, Outcome.CANCELLED, System.nanoTime() - start);
+                if (circuitBreaker != null) {
+                    circuitBreaker.release(permit);
                 }
-                log.debug("Weather API response: {}", weatherResponse);
+            } else {
+                metrics.recordUpstream(api, Outcome.ERROR, System.nanoTime() - start);
+                recordUpstreamOutcome(permit, false);
+            }
+            throw e;
+        }
+    }
+
+    private void recordUpstreamOutcome(long permit, boolean answered) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (answered) {
+            circuitBreaker.onSuccess(permit);
+        } else {
+            circuitBreaker.onFailure(permit);
+        }
+    }
 
-                WeatherDTO weatherDTO = objectMapper.readValue(weatherResponse, WeatherDTO.class);
-                cache.put(city, weatherDTO);
-                return weatherDTO;
-            } catch (RestClientException e) {
-                throw new WeatherApiException("Error accessing weather API: " + e.getMessage(), e);
+    private RenderedWeather awaitFlight(CompletableFuture<RenderedWeather> flight, String city) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WeatherApiException apiException) {
+                throw apiException;
             }
-        } catch (JsonProcessingException e) {
-            throw new WeatherApiException("Failed to parse weather data", e);
+            throw new WeatherApiException("Failed to get weather data for city: " + city, e.getCause());
+        }
+    }
+
+    private WeatherDTO fetchWeatherData(String city, Priority priority) {
+        Coordinates location = resolveLocation(city, priority);
+
+        String weatherUrl = String.format("%s?lat=%s&lon=%s&appid=%s&units=metric",
+            config.getWeatherUrl(), location.latParam(), location.lonParam(), apiKey);
+
+        try {
+            WeatherDTO weather = callUpstream(weatherHedger, Api.WEATHER, weatherUrl, weatherReader,
+                "Failed to parse weather data", priority);
+            if (weather == null) {
+                throw new WeatherApiException("Failed to get weather data for city: " + city);
+            }
+            log.debug("Weather API response: {}", weather);
+            return weather;
+        } catch (RestClientException e) {
+            throw new WeatherApiException("Error accessing weather API: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns an extractor deserializing the response body straight from its stream.
+     * An empty body yields null. The parse time recorded includes reading the body, which
+     * is parsed while it arrives.
+     */
+    private static <T> ResponseExtractor<T> readBody(ObjectReader reader, String parseError, Timer parseTimer) {
+        return response -> {
+            long start = System.nanoTime();
+            try (JsonParser parser = reader.createParser(response.getBody())) {
+                if (parser.nextToken() == null) {
+                    return null;
+                }
+                return reader.readValue(parser);
+            } catch (JsonProcessingException e) {
+                throw new WeatherApiException(parseError, e);
+            } finally {
+                parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Resolves city coordinates, calling the geocoding API only when they are neither
+     * cached nor persisted in the geocode store yet.
+     * A city's coordinates do not change, so refreshes reuse the cached location.
+     * Lookups run outside the cache, on the caller's thread, and only successful ones are cached;
+     * concurrent callers for the same city share the lookup in flight, like weather fetches do.
+     *
+     * @param city Name of the city
+     * @param priority Rate limiter priority of the upstream call
+     * @return Location of the city
+     * @throws WeatherApiException if city not found or API error occurs
+     */
+    private Coordinates resolveLocation(String city, Priority priority) {
+        Coordinates cached = geoCache.getIfPresent(city);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Coordinates> lookup = new CompletableFuture<>();
+        CompletableFuture<Coordinates> existing = geoInFlight.putIfAbsent(city, lookup);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof WeatherApiException apiException) {
+                    throw apiException;
+                }
+                throw new WeatherApiException("Failed to resolve location of city: " + city, e.getCause());
+            }
+        }
+        try {
+            // A lookup that finished after the miss above has already cached the location
+            Coordinates location = geoCache.asMap().get(city);
+            if (location == null) {
+                location = loadLocation(city, priority);
+                geoCache.put(city, location);
+            }
+            lookup.complete(location);
+            return location;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            geoInFlight.remove(city, lookup);
+        }
+    }
+
+    private Coordinates loadLocation(String city, Priority priority) {
+        if (geocodeStore != null) {
+            Optional<GeocodingDTO> stored = geocodeStore.find(city);
+            if (stored.isPresent()) {
+                return Coordinates.of(stored.get());
+            }
+        }
+        GeocodingDTO location = fetchLocation(city, priority);
+        if (geocodeStore != null) {
+            geocodeStore.save(city, location);
+        }
+        return Coordinates.of(location);
+    }
+
+    private GeocodingDTO fetchLocation(String city, Priority priority) {
+        try {
+            String geoUrl = String.format("%s?q=%s&limit=1&appid=%s",
+                config.getGeoUrl(), city, apiKey);
+            List<GeocodingDTO> locations = callUpstream(geoHedger, Api.GEO, geoUrl, locationsReader,
+                "Failed to parse location data", priority);
+            log.debug("Geo API response: {}", locations);
+
+            if (locations == null || locations.isEmpty()
+                    || locations.get(0).getLat() == null || locations.get(0).getLon() == null) {
+                throw new WeatherApiException("City not found: " + city);
+            }
+            return locations.get(0);
         } catch (RestClientException e) {
             throw new WeatherApiException("Error accessing geo API: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns statistics of the weather cache: hit rate, evictions and upstream load times.
+     *
+     * @return Weather cache statistics
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns hit and miss statistics of the geocoding cache.
+     *
+     * @return Geocoding cache statistics
+     */
+    public CacheStats getGeoCacheStats() {
+        return geoCache.stats();
+    }
+
+    /**
+     * Returns the upstream rate limiter of this API key with its bucket level and counters.
+     *
+     * @return Rate limiter, or null if rate limiting is disabled
+     */
+    public UpstreamRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns the upstream circuit breaker of this API key with its state and counters.
+     *
+     * @return Circuit breaker, or null if disabled
+     */
+    public UpstreamCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the hedgers of the geocoding and weather calls with their delays and counters.
+     *
+     * @return Hedger of the weather calls, or null if hedging is disabled
+     */
+    public UpstreamHedger getWeatherHedger() {
+        return weatherHedger;
+    }
+
+    public UpstreamHedger getGeoHedger() {
+        return geoHedger;
+    }
+
+    /**
+     * Registers a listener called whenever a fetch or refresh changed the cached weather of a city,
+     * including its first fetch. Listeners run on the thread that fetched the data and should return quickly.
+     * Adding a registered listener again has no effect; shutdown removes all listeners.
+     *
+     * @param listener Listener to add
+     */
+    public void addUpdateListener(WeatherUpdateListener listener) {
+        updateListeners.addIfAbsent(listener);
+    }
+
+    public void removeUpdateListener(WeatherUpdateListener listener) {
+        updateListeners.remove(listener);
+    }
+
     /**
      * Returns a set of city names currently stored in cache.
      *
      * @return Set of cached city names
      */
     public Set<String> getCachedCities() {
-        return cache.asMap().keySet();
+        return cache.cities();
+    }
+
+    /**
+     * Returns the observations of a city fetched by this service within a time window,
+     * from fetches on demand as well as from polling and refreshes.
+     *
+     * @param city Name of the city
+     * @param fromSeconds Earliest observation time, inclusive, in epoch seconds
+     * @param toSeconds Latest observation time, inclusive, in epoch seconds
+     * @return Observations in the window, oldest first, or null if the city has no history
+     */
+    public WeatherHistoryDTO getWeatherHistory(String city, long fromSeconds, long toSeconds) {
+        return history != null ? history.get(city.trim(), fromSeconds, toSeconds) : null;
     }
 
     /**
      * Forces an update of weather data for a specific city.
-     * Bypasses cache and fetches fresh data from API.
+     * Bypasses cache and fetches fresh data from API,
+     * joining a fetch for the same city if one is already in flight.
      *
      * @param city Name of the city to update
      * @throws WeatherApiException if update fails
      */
     public void updateWeatherData(String city) {
-        fetchWeatherData(city);
+        loadWeatherData(city, false, Priority.BACKGROUND);
     }
 }
 
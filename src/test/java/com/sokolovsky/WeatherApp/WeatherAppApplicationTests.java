@@ -1,13 +1,26 @@
 package com.sokolovsky.WeatherApp;
 
+import com.sokolovsky.WeatherApp.service.WeatherService;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 class WeatherAppApplicationTests {
 
+	@Autowired
+	private ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void weatherServices_ShouldOnlyBeCreatedByTheFactory() {
+		assertEquals(0, context.getBeanNamesForType(WeatherService.class).length);
+	}
+
 }
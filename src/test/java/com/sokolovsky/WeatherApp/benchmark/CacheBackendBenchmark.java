@@ -0,0 +1,167 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.RenderedWeather;
+import com.sokolovsky.WeatherApp.service.WeatherCache;
+import com.sokolovsky.WeatherApp.service.impl.CaffeineWeatherCache;
+import com.sokolovsky.WeatherApp.service.impl.OffHeapWeatherCache;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap and off-heap weather caches holding {@value #CITIES} cities under a mix of 90% reads
+ * and 10% writes of freshly fetched entries. Reports throughput and, with the GC profiler,
+ * time spent in GC; the setup prints heap and direct memory taken by the filled cache and the
+ * teardown prints the longest GC pause seen after the cache was filled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=1g", "-XX:+UseG1GC"})
+public class CacheBackendBenchmark {
+    private static final int CITIES = 500_000;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public String backend;
+
+    private WeatherCache cache;
+    private String[] cities;
+    private ObjectWriter writer;
+    private final AtomicLong maxPauseMillis = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        writer = new WebConfig().objectMapper().writerFor(WeatherDTO.class).without(SerializationFeature.INDENT_OUTPUT);
+        cache = "HEAP".equals(backend)
+                ? new CaffeineWeatherCache(Caffeine.newBuilder()
+                    .maximumSize(CITIES)
+                    .expireAfterWrite(Duration.ofHours(1))
+                    .recordStats(ConcurrentStatsCounter::new)
+                    .<String, RenderedWeather>build())
+                : new OffHeapWeatherCache(CITIES, Duration.ofHours(1), new ConcurrentStatsCounter(), null);
+
+        long heapBefore = usedHeapAfterGc();
+        cities = new String[CITIES];
+        for (int i = 0; i < CITIES; i++) {
+            cities[i] = "City" + i;
+        }
+        long heapWithKeys = usedHeapAfterGc();
+        for (int i = 0; i < CITIES; i++) {
+            cache.put(cities[i], render(cities[i], 10.0));
+        }
+        long heapWithCache = usedHeapAfterGc();
+        System.out.printf("%n%s backend: %d MB heap (%d bytes per city), %d MB direct memory, %d MB city names%n",
+            backend, (heapWithCache - heapWithKeys) >> 20, (heapWithCache - heapWithKeys) / CITIES,
+            directMemory() >> 20, (heapWithKeys - heapBefore) >> 20);
+        trackPauses();
+    }
+
+    private void trackPauses() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                maxPauseMillis.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+            }, notification -> notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION),
+                null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s backend: longest GC pause %d ms%n", backend, maxPauseMillis.get());
+        cache.invalidateAll();
+    }
+
+    @Benchmark
+    public Object readMostly() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String city = cities[random.nextInt(CITIES)];
+        if (random.nextInt(10) == 0) {
+            return cache.put(city, render(city, random.nextInt(40)));
+        }
+        return cache.getIfPresent(city);
+    }
+
+    private RenderedWeather render(String city, double temp) throws Exception {
+        WeatherDTO.Weather condition = new WeatherDTO.Weather();
+        condition.setMain("Clouds");
+        condition.setDescription("overcast clouds");
+        WeatherDTO.Main main = new WeatherDTO.Main();
+        main.setTemp(temp);
+        main.setFeelsLike(temp - 2);
+        WeatherDTO.Wind wind = new WeatherDTO.Wind();
+        wind.setSpeed(4.12);
+        WeatherDTO.Sys sys = new WeatherDTO.Sys();
+        sys.setSunrise(1740888499L);
+        sys.setSunset(1740926935L);
+        WeatherDTO weather = new WeatherDTO();
+        weather.setWeatherList(List.of(condition));
+        weather.setMain(main);
+        weather.setVisibility(10000);
+        weather.setWind(wind);
+        weather.setDt(1740934487L);
+        weather.setSys(sys);
+        weather.setTimezone(0);
+        weather.setName(city);
+        byte[] json = writer.writeValueAsBytes(weather);
+        return new RenderedWeather(WeatherSnapshot.of(weather), json, "\"67c4a3d7-" + Integer.toHexString(city.hashCode()) + "\"",
+            System.currentTimeMillis(), System.currentTimeMillis() + 600_000);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheBackendBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
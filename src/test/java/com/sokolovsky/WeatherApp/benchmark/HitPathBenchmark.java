@@ -0,0 +1,95 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.sokolovsky.WeatherApp.WeatherAppApplication;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second of {@code GET /weather} for a city that is already cached, i.e. the
+ * cost of serving a hit through the full HTTP stack of the application. The application runs
+ * in-process against a local stub; callers keep their connections alive, so mostly the
+ * controller and response writing are measured.
+ * {@code revalidatedCity} sends the ETag of the first response in If-None-Match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 30, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(2)
+public class HitPathBenchmark {
+    private OpenWeatherStubServer stub;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+    private HttpRequest revalidation;
+
+    @Setup
+    public void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        context = new SpringApplicationBuilder(WeatherAppApplication.class)
+                .run("--server.port=0",
+                        "--logging.level.root=WARN",
+                        "--weather.geo-url=" + stub.geoUrl(),
+                        "--weather.weather-url=" + stub.weatherUrl());
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/weather?city=London")).build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Warm-up request failed");
+        }
+        revalidation = HttpRequest.newBuilder(request.uri())
+                .header("If-None-Match", response.headers().firstValue("ETag").orElse("\"none\""))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public int cachedCity() throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    /**
+     * A client revalidating its copy with the ETag it got before.
+     */
+    @Benchmark
+    public int revalidatedCity() throws Exception {
+        return client.send(revalidation, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HitPathBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
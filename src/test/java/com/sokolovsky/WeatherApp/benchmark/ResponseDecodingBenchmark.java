@@ -0,0 +1,112 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding one fetch, i.e. a geocoding and a weather response, comparing reading
+ * the bodies into Strings and parsing those with a fresh TypeReference against deserializing
+ * straight from the response streams with cached ObjectReaders.
+ * Responses are served from memory so only decoding is measured; run with the GC profiler
+ * enabled in {@link #main} to compare allocation per fetch ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+    private static final byte[] GEO_RESPONSE = ("[{\"name\":\"London\",\"local_names\":{\"en\":\"London\",\"fr\":\"Londres\"},"
+            + "\"lat\":51.5073219,\"lon\":-0.1276474,\"country\":\"GB\",\"state\":\"England\"}]")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] WEATHER_RESPONSE = ("{\"coord\":{\"lon\":-0.1276,\"lat\":51.5073},"
+            + "\"weather\":[{\"id\":804,\"main\":\"Clouds\",\"description\":\"overcast clouds\",\"icon\":\"04d\"}],"
+            + "\"base\":\"stations\",\"main\":{\"temp\":9.84,\"feels_like\":7.51,\"temp_min\":8.78,\"temp_max\":10.62,"
+            + "\"pressure\":1021,\"humidity\":79},\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":240},"
+            + "\"clouds\":{\"all\":100},\"dt\":1740934487,\"sys\":{\"type\":2,\"id\":2075535,\"country\":\"GB\","
+            + "\"sunrise\":1740888499,\"sunset\":1740926935},\"timezone\":0,\"id\":2643743,\"name\":\"London\",\"cod\":200}")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final String GEO_URL = "http://localhost/geo/1.0/direct?q=London&limit=1&appid=bench";
+    private static final String WEATHER_URL = "http://localhost/data/2.5/weather?lat=51.5&lon=-0.12&appid=bench";
+
+    private RestTemplate restTemplate;
+    private ObjectMapper objectMapper;
+    private ObjectReader weatherReader;
+    private ObjectReader locationsReader;
+
+    @Setup
+    public void setUp() {
+        restTemplate = new RestTemplate((uri, method) -> {
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            byte[] body = uri.getPath().startsWith("/geo") ? GEO_RESPONSE : WEATHER_RESPONSE;
+            MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.setResponse(response);
+            return request;
+        });
+        objectMapper = new WebConfig().objectMapper();
+        weatherReader = objectMapper.readerFor(WeatherDTO.class);
+        locationsReader = objectMapper.readerFor(new TypeReference<List<GeocodingDTO>>() {});
+    }
+
+    @Benchmark
+    public void viaString(Blackhole blackhole) throws Exception {
+        String geoResponse = restTemplate.getForObject(GEO_URL, String.class);
+        blackhole.consume(objectMapper.readValue(geoResponse, new TypeReference<List<GeocodingDTO>>() {}));
+        String weatherResponse = restTemplate.getForObject(WEATHER_URL, String.class);
+        blackhole.consume(objectMapper.readValue(weatherResponse, WeatherDTO.class));
+    }
+
+    @Benchmark
+    public void streamed(Blackhole blackhole) {
+        blackhole.consume(restTemplate.execute(GEO_URL, HttpMethod.GET, null, readBody(locationsReader)));
+        blackhole.consume(restTemplate.execute(WEATHER_URL, HttpMethod.GET, null, readBody(weatherReader)));
+    }
+
+    private static <T> ResponseExtractor<T> readBody(ObjectReader reader) {
+        return response -> {
+            try (JsonParser parser = reader.createParser(response.getBody())) {
+                return parser.nextToken() == null ? null : reader.readValue(parser);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResponseDecodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.sokolovsky.WeatherApp.WeatherAppApplication;
+import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
+import com.sokolovsky.WeatherApp.service.WeatherService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WeatherSDKFactory#createSDK} looking up existing instances from {@value #THREADS} threads
+ * at once, i.e. the cost every request pays to find the service of its API key. With one key all
+ * threads contend on the same entry; with more keys lookups are spread over the map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(SdkFactoryBenchmark.THREADS)
+public class SdkFactoryBenchmark {
+    static final int THREADS = 8;
+
+    @Param({"1", "64"})
+    public int keys;
+
+    private ConfigurableApplicationContext context;
+    private WeatherSDKFactory factory;
+    private String[] apiKeys;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(WeatherAppApplication.class)
+                .run("--server.port=0", "--logging.level.root=WARN");
+        factory = context.getBean(WeatherSDKFactory.class);
+        apiKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            apiKeys[i] = "bench-key-" + i;
+            factory.createSDK(apiKeys[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public WeatherService createSDK() {
+        return factory.createSDK(apiKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SdkFactoryBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
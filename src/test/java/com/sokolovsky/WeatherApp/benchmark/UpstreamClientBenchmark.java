@@ -0,0 +1,102 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call latency of upstream requests against the HTTPS stub server, comparing the
+ * default {@link RestTemplate} backed by {@code HttpURLConnection} with the pooled JDK
+ * {@link HttpClient} configured in {@link WebConfig}.
+ * Run with {@code mvn test-compile} followed by {@code java -cp <test classpath> ...UpstreamClientBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpstreamClientBenchmark {
+    private OpenWeatherStubServer stub;
+    private String url;
+    private RestTemplate defaultTemplate;
+    private RestTemplate pooledTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SSLContext tls = OpenWeatherStubServer.tlsContext();
+        stub = new OpenWeatherStubServer(tls);
+        url = stub.weatherUrl() + "?lat=51.5074&lon=-0.1278&appid=bench&units=metric";
+        defaultTemplate = new RestTemplate(new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                if (connection instanceof HttpsURLConnection https) {
+                    https.setSSLSocketFactory(tls.getSocketFactory());
+                }
+            }
+        });
+        HttpClient httpClient = WebConfig.upstreamHttpClientBuilder(Duration.ofSeconds(2), HttpClient.Version.HTTP_2)
+                .sslContext(tls)
+                .build();
+        pooledTemplate = WebConfig.pooledRestTemplate(httpClient, Duration.ofSeconds(5));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public String defaultClient() {
+        return defaultTemplate.getForObject(url, String.class);
+    }
+
+    @Benchmark
+    public String pooledClient() {
+        return pooledTemplate.getForObject(url, String.class);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String defaultClientConcurrent() {
+        return defaultTemplate.getForObject(url, String.class);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String pooledClientConcurrent() {
+        return pooledTemplate.getForObject(url, String.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UpstreamClientBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
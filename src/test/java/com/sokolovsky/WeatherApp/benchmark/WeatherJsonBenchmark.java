@@ -0,0 +1,74 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading an upstream weather response into a {@link WeatherDTO} and writing a {@link WeatherDTO}
+ * as returned to clients, with the {@link ObjectMapper} configured in {@link WebConfig}.
+ * Run with the GC profiler enabled in {@link #main} to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherJsonBenchmark {
+    private static final byte[] WEATHER_RESPONSE = ("{\"coord\":{\"lon\":-0.1276,\"lat\":51.5073},"
+            + "\"weather\":[{\"id\":804,\"main\":\"Clouds\",\"description\":\"overcast clouds\",\"icon\":\"04d\"}],"
+            + "\"base\":\"stations\",\"main\":{\"temp\":9.84,\"feels_like\":7.51,\"temp_min\":8.78,\"temp_max\":10.62,"
+            + "\"pressure\":1021,\"humidity\":79},\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":240},"
+            + "\"clouds\":{\"all\":100},\"dt\":1740934487,\"sys\":{\"type\":2,\"id\":2075535,\"country\":\"GB\","
+            + "\"sunrise\":1740888499,\"sunset\":1740926935},\"timezone\":0,\"id\":2643743,\"name\":\"London\",\"cod\":200}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private ObjectReader reader;
+    private ObjectWriter writer;
+    private WeatherDTO weather;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new WebConfig().objectMapper();
+        reader = objectMapper.readerFor(WeatherDTO.class);
+        writer = objectMapper.writerFor(WeatherDTO.class);
+        weather = reader.readValue(WEATHER_RESPONSE);
+    }
+
+    @Benchmark
+    public WeatherDTO deserialize() throws Exception {
+        return reader.readValue(WEATHER_RESPONSE);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(weather);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WeatherJsonBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.sokolovsky.WeatherApp.benchmark;
+
+import com.sokolovsky.WeatherApp.WeatherAppApplication;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
+import com.sokolovsky.WeatherApp.service.WeatherService;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link WeatherService#getWeatherData} called directly on an SDK instance, without the HTTP
+ * stack of the application. {@code hit} reads a cached city; {@code miss} cycles through
+ * {@value #MISS_CITIES} cities, far more than fit in the weather and location caches, so nearly
+ * every call sends a geocoding and a weather request to the in-process stub and renders the result.
+ * The GC profiler enabled in {@link #main} reports allocation per call ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WeatherServiceBenchmark {
+    private static final int MISS_CITIES = 200_000;
+
+    private OpenWeatherStubServer stub;
+    private ConfigurableApplicationContext context;
+    private WeatherService service;
+    private String[] missCities;
+    private final AtomicInteger nextMiss = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        context = new SpringApplicationBuilder(WeatherAppApplication.class)
+                .run("--server.port=0",
+                        "--logging.level.root=WARN",
+                        "--weather.geo-url=" + stub.geoUrl(),
+                        "--weather.weather-url=" + stub.weatherUrl());
+        service = context.getBean(WeatherSDKFactory.class).createSDK("bench");
+        service.getWeatherData("London");
+        missCities = new String[MISS_CITIES];
+        for (int i = 0; i < MISS_CITIES; i++) {
+            missCities[i] = "City" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public WeatherDTO hit() {
+        return service.getWeatherData("London");
+    }
+
+    @Benchmark
+    public WeatherDTO miss() {
+        return service.getWeatherData(missCities[Math.floorMod(nextMiss.getAndIncrement(), MISS_CITIES)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WeatherServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
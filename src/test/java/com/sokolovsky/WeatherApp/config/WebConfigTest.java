@@ -0,0 +1,55 @@
+package com.sokolovsky.WeatherApp.config;
+
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebConfigTest {
+    private OpenWeatherStubServer stub;
+    private HttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new OpenWeatherStubServer(OpenWeatherStubServer.tlsContext());
+        httpClient = WebConfig.upstreamHttpClientBuilder(Duration.ofSeconds(1), HttpClient.Version.HTTP_2)
+                .sslContext(OpenWeatherStubServer.tlsContext())
+                .build();
+        restTemplate = WebConfig.pooledRestTemplate(httpClient, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void pooledRestTemplate_ShouldCallUpstreamOverTls() {
+        for (int i = 0; i < 3; i++) {
+            String body = restTemplate.getForObject(stub.weatherUrl() + "?lat=1&lon=2", String.class);
+            assertNotNull(body);
+            assertTrue(body.contains("\"temp\":20.0"));
+        }
+        assertEquals(3, stub.weatherCalls());
+    }
+
+    @Test
+    void pooledRestTemplate_ShouldFailWhenResponseIsSlowerThanReadTimeout() {
+        RestTemplate impatientTemplate = WebConfig.pooledRestTemplate(httpClient, Duration.ofMillis(200));
+        restTemplate.getForObject(stub.weatherUrl() + "?lat=1&lon=2", String.class);
+        stub.setLatencyMillis(1000);
+
+        long start = System.nanoTime();
+        assertThrows(ResourceAccessException.class,
+                () -> impatientTemplate.getForObject(stub.weatherUrl() + "?lat=1&lon=2", String.class));
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(900).toNanos(), "Request should time out early");
+    }
+}
@@ -0,0 +1,240 @@
+package com.sokolovsky.WeatherApp.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokolovsky.WeatherApp.service.WeatherSDKFactory;
+import com.sokolovsky.WeatherApp.service.WeatherService;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the application with only {@value #SERVLET_THREADS} servlet threads against a slow stub,
+ * so requests can only be served concurrently if they do not hold their thread during upstream calls.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "server.tomcat.threads.max=" + WeatherControllerTest.SERVLET_THREADS,
+    "server.tomcat.threads.min-spare=1",
+    "weather.async.fetch-threads=64"
+})
+@AutoConfigureObservability(tracing = false)
+class WeatherControllerTest {
+    static final int SERVLET_THREADS = 4;
+    private static final int REQUESTS = 32;
+    private static final long LATENCY_MILLIS = 250;
+
+    private static OpenWeatherStubServer stub;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WeatherSDKFactory sdkFactory;
+
+    @Autowired
+    private String apiKey;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new OpenWeatherStubServer();
+        stub.setLatencyMillis(LATENCY_MILLIS);
+        registry.add("weather.geo-url", stub::geoUrl);
+        registry.add("weather.weather-url", stub::weatherUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void getWeather_ShouldServeMoreConcurrentMissesThanServletThreads() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/weather?city=City" + i)).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get(30, TimeUnit.SECONDS).statusCode());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Blocking servlet threads would need REQUESTS / SERVLET_THREADS rounds of two upstream calls each
+        long blockingMillis = REQUESTS / SERVLET_THREADS * 2 * LATENCY_MILLIS;
+        assertTrue(elapsedMillis < blockingMillis / 2,
+            "Requests took " + elapsedMillis + " ms, blocking would take " + blockingMillis + " ms");
+    }
+
+    @Test
+    void prometheus_ShouldExposeWeatherMetrics() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/weather?city=Lisbon")).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        HttpResponse<String> response = client.send(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/prometheus")).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("weather_cache_requests_total{"));
+        assertTrue(response.body().contains("weather_upstream_requests_seconds_bucket{"));
+        assertTrue(response.body().contains("weather_sdk_instances "));
+    }
+
+    @Test
+    void getWeatherBatch_ShouldReturnResultPerDistinctCity() throws Exception {
+        stub.addUnknownCity("Atlantis");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/weather/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[\"Berlin\", \"Atlantis\", \"Berlin\"]"))
+                .build();
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        JsonNode results = new ObjectMapper().readTree(response.body());
+        assertEquals(2, results.size());
+        assertEquals("Berlin", results.get(0).get("city").asText());
+        assertEquals(200, results.get(0).get("status").asInt());
+        assertTrue(results.get(0).has("weather"));
+        assertEquals("Atlantis", results.get(1).get("city").asText());
+        assertEquals(400, results.get(1).get("status").asInt());
+        assertTrue(results.get(1).has("error"));
+    }
+
+    @Test
+    void streamWeather_ShouldPushOnlyChangedWeather() throws Exception {
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/weather/stream?cities=Oslo")).build();
+        HttpClient.newHttpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> response.body()
+                        .filter(line -> line.startsWith("data:"))
+                        .forEach(events::add));
+
+        String initial = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(initial, "Current weather should be sent on subscribe");
+        assertTrue(initial.contains("\"city\":\"Oslo\""));
+
+        WeatherService service = sdkFactory.createSDK(apiKey);
+        service.updateWeatherData("Oslo");
+        assertNull(events.poll(1, TimeUnit.SECONDS), "Unchanged weather should not be pushed");
+
+        stub.setTemperature(-5.0);
+        try {
+            service.updateWeatherData("Oslo");
+            String update = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "Changed weather should be pushed");
+            assertTrue(update.contains("\"temp\":-5.0"));
+        } finally {
+            stub.setTemperature(20.0);
+        }
+    }
+
+    @Test
+    void streamWeather_ShouldKeepPushing_AfterSdkIsRecreated() throws Exception {
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/weather/stream?cities=Bergen")).build();
+        HttpClient.newHttpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> response.body()
+                        .filter(line -> line.startsWith("data:"))
+                        .forEach(events::add));
+        assertNotNull(events.poll(10, TimeUnit.SECONDS), "Current weather should be sent on subscribe");
+
+        sdkFactory.destroySDK(apiKey);
+        WeatherService service = sdkFactory.createSDK(apiKey);
+        stub.setTemperature(-7.0);
+        try {
+            service.updateWeatherData("Bergen");
+            String update = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "Updates of the new instance should be pushed");
+            assertTrue(update.contains("\"temp\":-7.0"));
+        } finally {
+            stub.setTemperature(20.0);
+        }
+    }
+
+    @Test
+    void getWeather_ShouldAnswerMatchingIfNoneMatchWithNotModified() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        URI uri = URI.create("http://localhost:" + port + "/weather?city=Lisbon");
+
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, first.statusCode());
+        assertFalse(first.body().contains("\n"), "Cached response should be compact");
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        String cacheControl = first.headers().firstValue("Cache-Control").orElseThrow();
+        assertTrue(cacheControl.startsWith("max-age="), cacheControl);
+
+        HttpResponse<String> second = client.send(HttpRequest.newBuilder(uri).header("If-None-Match", etag).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, second.statusCode());
+        assertEquals(etag, second.headers().firstValue("ETag").orElseThrow());
+        assertTrue(second.body().isEmpty());
+
+        HttpResponse<String> stale = client.send(HttpRequest.newBuilder(uri).header("If-None-Match", "\"0-0\"").build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, stale.statusCode());
+        assertEquals(first.body(), stale.body());
+    }
+
+    @Test
+    void getWeatherHistory_ShouldReturnFetchedObservations() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/weather?city=Madrid")).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        HttpResponse<String> history = client.send(HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/weather/history?city=Madrid&from=1740930000")).build(),
+            HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> unknown = client.send(HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/weather/history?city=Nowhere")).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, history.statusCode());
+        JsonNode series = new ObjectMapper().readTree(history.body());
+        assertEquals("Madrid", series.get("city").asText());
+        assertEquals(1740934487L, series.get("datetime").get(0).asLong());
+        assertEquals(19.5, series.get("feels_like").get(0).asDouble());
+        assertEquals(3.1, series.get("wind_speed").get(0).asDouble());
+        assertFalse(series.has("size"));
+        assertEquals(404, unknown.statusCode());
+    }
+
+    @Test
+    void getWeather_ShouldReturnBadRequest_WhenCityNotFound() throws Exception {
+        stub.addUnknownCity("Atlantis");
+        HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/weather?city=Atlantis")).build();
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+    }
+}
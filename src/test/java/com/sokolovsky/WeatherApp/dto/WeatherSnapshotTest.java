@@ -0,0 +1,96 @@
+package com.sokolovsky.WeatherApp.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class WeatherSnapshotTest {
+    private static final int CITIES = 10_000;
+    private static final String RESPONSE = "{\"weather\":[{\"id\":804,\"main\":\"Clouds\",\"description\":\"overcast clouds\"}],"
+            + "\"main\":{\"temp\":%s,\"feels_like\":7.51},\"visibility\":10000,\"wind\":{\"speed\":4.12},"
+            + "\"dt\":%d,\"sys\":{\"sunrise\":1740888499,\"sunset\":1740926935},\"timezone\":0,\"name\":\"City%d\"}";
+
+    private final ObjectMapper objectMapper = new WebConfig().objectMapper();
+
+    @Test
+    void toDto_ShouldGiveBackEqualWeather() throws Exception {
+        WeatherDTO weather = parse(0);
+
+        WeatherDTO copy = WeatherSnapshot.of(weather).toDto();
+
+        assertEquals(weather, copy);
+        assertEquals(objectMapper.writeValueAsString(weather), objectMapper.writeValueAsString(copy));
+    }
+
+    @Test
+    void toDto_ShouldKeepMissingFieldsMissing() throws Exception {
+        WeatherDTO weather = objectMapper.readValue("{\"main\":{\"temp\":0.0},\"name\":\"Nowhere\"}", WeatherDTO.class);
+
+        WeatherDTO copy = WeatherSnapshot.of(weather).toDto();
+
+        assertEquals(weather, copy);
+        assertNull(copy.getMain().getFeelsLike());
+        assertNull(copy.getDatetime());
+        assertNull(copy.getWind());
+    }
+
+    @Test
+    void toDto_ShouldKeepEveryCondition() throws Exception {
+        WeatherDTO weather = objectMapper.readValue("{\"weather\":[{\"main\":\"Rain\",\"description\":\"light rain\"},"
+            + "{\"main\":\"Mist\",\"description\":\"mist\"},{\"main\":\"Fog\"}],\"name\":\"Bergen\"}", WeatherDTO.class);
+
+        WeatherDTO copy = WeatherSnapshot.of(weather).toDto();
+
+        assertEquals(weather, copy);
+        assertEquals(3, copy.getWeatherList().size());
+        assertEquals(WeatherSnapshot.of(weather), WeatherSnapshot.of(copy));
+    }
+
+    @Test
+    void of_ShouldShareConditionStrings() throws Exception {
+        WeatherSnapshot first = WeatherSnapshot.of(parse(1));
+        WeatherSnapshot second = WeatherSnapshot.of(parse(2));
+
+        assertSame(first.condition(), second.condition());
+        assertSame(first.description(), second.description());
+    }
+
+    /**
+     * Reports the retained heap per cached city of the DTOs and of their snapshots.
+     */
+    @Test
+    void footprint_ShouldBeSmallerThanDto() throws Exception {
+        List<WeatherDTO> dtos = new ArrayList<>(CITIES);
+        List<WeatherSnapshot> snapshots = new ArrayList<>(CITIES);
+        for (int i = 0; i < CITIES; i++) {
+            WeatherDTO weather = parse(i);
+            dtos.add(weather);
+            snapshots.add(WeatherSnapshot.of(weather));
+        }
+
+        GraphLayout dtoLayout = GraphLayout.parseInstance(dtos.toArray());
+        GraphLayout snapshotLayout = GraphLayout.parseInstance(snapshots.toArray());
+        double dtoBytes = (double) dtoLayout.totalSize() / CITIES;
+        double snapshotBytes = (double) snapshotLayout.totalSize() / CITIES;
+        log.info("WeatherDTO: {} bytes and {} objects per city",
+            String.format("%.1f", dtoBytes), String.format("%.1f", (double) dtoLayout.totalCount() / CITIES));
+        log.info("WeatherSnapshot: {} bytes and {} objects per city",
+            String.format("%.1f", snapshotBytes), String.format("%.1f", (double) snapshotLayout.totalCount() / CITIES));
+
+        assertTrue(snapshotBytes < dtoBytes / 2,
+            "Snapshot takes " + snapshotBytes + " bytes per city, DTO " + dtoBytes);
+    }
+
+    private WeatherDTO parse(int city) throws Exception {
+        return objectMapper.readValue(String.format(RESPONSE, 9.84 + city % 100 / 10.0, 1740934487L + city, city),
+            WeatherDTO.class);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sokolovsky.WeatherApp.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the index of the city each request asks for. Uniform spreads requests evenly over all
+ * cities; Zipfian makes city {@code i} (counting from 1) {@code i^exponent} times less popular
+ * than the first one, like real traffic where a few large cities get most requests.
+ */
+public abstract class KeyDistribution {
+
+    public abstract int next();
+
+    public static KeyDistribution uniform(int cities) {
+        return new KeyDistribution() {
+            @Override
+            public int next() {
+                return ThreadLocalRandom.current().nextInt(cities);
+            }
+        };
+    }
+
+    /**
+     * Returns a Zipfian distribution, sampled by binary search over its precomputed cumulative probabilities.
+     *
+     * @param cities Number of cities
+     * @param exponent Skew of the distribution, 0 being uniform
+     */
+    public static KeyDistribution zipfian(int cities, double exponent) {
+        double[] cumulative = new double[cities];
+        double sum = 0;
+        for (int i = 0; i < cities; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        double total = sum;
+        return new KeyDistribution() {
+            @Override
+            public int next() {
+                int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble() * total);
+                return Math.min(cities - 1, index >= 0 ? index : -index - 1);
+            }
+        };
+    }
+}
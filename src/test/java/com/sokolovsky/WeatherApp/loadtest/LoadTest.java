@@ -0,0 +1,243 @@
+package com.sokolovsky.WeatherApp.loadtest;
+
+import com.sokolovsky.WeatherApp.WeatherAppApplication;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of {@code GET /weather}. Starts the application in this JVM against an
+ * {@link OpenWeatherStubServer} with the given latency and error rate, then sends requests at a
+ * fixed rate for a warm-up and a measured phase, once per configuration. The load is open-loop:
+ * requests are sent on schedule whether or not earlier ones completed, and latency is counted from
+ * the time a request was due, so a slow application is not hidden by a slowed-down client.
+ * <p>
+ * Options are given as {@code name=value}; arguments after {@code --} are passed to the application:
+ * <pre>
+ * rate=200             requests per second
+ * duration=30s         measured phase
+ * warmup=30s           phase run before measuring, not reported; also warms up the JIT, which
+ *                      on a small machine takes longer than filling the cache
+ * cities=1000          number of distinct cities requested
+ * unknown-cities=0     number of the least popular cities the stub does not know
+ * distribution=zipf    uniform or zipf
+ * zipf-exponent=1.0    skew of the Zipfian distribution
+ * latency=50ms         stub latency per upstream call
+ * error-rate=0         fraction of upstream calls answered with HTTP 503
+ * modes=ON_DEMAND,POLLING  weather.mode of each run
+ * virtual-threads=false    spring.threads.virtual.enabled of each run, e.g. false,true
+ * timeout=30s          time after which a request counts as failed
+ * </pre>
+ * Each combination of mode and threading gets a run. Reports throughput, latency percentiles, the most
+ * requests in flight at once, upstream calls and the cache hit ratio of each run.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int separator = Arrays.asList(args).indexOf("--");
+        Map<String, String> options = parseOptions(separator >= 0 ? Arrays.copyOf(args, separator) : args);
+        String[] appArgs = separator >= 0 ? Arrays.copyOfRange(args, separator + 1, args.length) : new String[0];
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : options.getOrDefault("modes", "ON_DEMAND,POLLING").split(",")) {
+            for (String virtual : options.getOrDefault("virtual-threads", "false").split(",")) {
+                results.add(run(options, mode.trim(), Boolean.parseBoolean(virtual.trim()), appArgs));
+            }
+        }
+        System.out.println();
+        System.out.println(Result.HEADER);
+        results.forEach(System.out::println);
+    }
+
+    private static Result run(Map<String, String> options, String mode, boolean virtual, String[] appArgs)
+            throws Exception {
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "30s"));
+        int cities = Integer.parseInt(options.getOrDefault("cities", "1000"));
+        int unknownCities = Integer.parseInt(options.getOrDefault("unknown-cities", "0"));
+        Duration timeout = DurationStyle.detectAndParse(options.getOrDefault("timeout", "30s"));
+        KeyDistribution distribution = "uniform".equals(options.getOrDefault("distribution", "zipf"))
+                ? KeyDistribution.uniform(cities)
+                : KeyDistribution.zipfian(cities, Double.parseDouble(options.getOrDefault("zipf-exponent", "1.0")));
+
+        try (OpenWeatherStubServer stub = new OpenWeatherStubServer()) {
+            stub.setLatencyMillis(DurationStyle.detectAndParse(options.getOrDefault("latency", "50ms")).toMillis());
+            stub.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")));
+            String[] names = new String[cities];
+            for (int i = 0; i < cities; i++) {
+                names[i] = "City" + i;
+                if (i >= cities - unknownCities) {
+                    stub.addUnknownCity(names[i]);
+                }
+            }
+
+            List<String> args = new ArrayList<>(List.of("--server.port=0",
+                    "--logging.level.root=WARN",
+                    "--weather.geo-url=" + stub.geoUrl(),
+                    "--weather.weather-url=" + stub.weatherUrl(),
+                    "--weather.mode=" + mode,
+                    "--spring.threads.virtual.enabled=" + virtual));
+            args.addAll(Arrays.asList(appArgs));
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherAppApplication.class)
+                    .run(args.toArray(String[]::new))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                MeterRegistry registry = context.getBean(MeterRegistry.class);
+                Phase phase = new Phase(port, names, distribution, timeout);
+
+                System.out.printf("%s: warming up for %d s%n", mode, warmup.toSeconds());
+                phase.run(rate, warmup);
+                int geoCalls = stub.geoCalls();
+                int weatherCalls = stub.weatherCalls();
+                double hits = cacheRequests(registry, "hit");
+                double misses = cacheRequests(registry, "miss");
+
+                System.out.printf("%s: measuring for %d s at %d requests/s%n", mode, duration.toSeconds(), rate);
+                phase = new Phase(port, names, distribution, timeout);
+                phase.run(rate, duration);
+
+                hits = cacheRequests(registry, "hit") - hits;
+                misses = cacheRequests(registry, "miss") - misses;
+                return new Result(mode + (virtual ? "/virtual" : ""), rate, phase, duration,
+                        stub.geoCalls() - geoCalls, stub.weatherCalls() - weatherCalls,
+                        hits + misses > 0 ? hits / (hits + misses) : Double.NaN);
+            }
+        }
+    }
+
+    private static double cacheRequests(MeterRegistry registry, String outcome) {
+        return registry.find("weather.cache.requests").tag("outcome", outcome).functionCounters().stream()
+                .mapToDouble(FunctionCounter::count)
+                .sum();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int idx = arg.indexOf('=');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, idx), arg.substring(idx + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Requests sent at a fixed rate for some time, with their outcomes.
+     */
+    private static final class Phase {
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        private final URI[] uris;
+        private final KeyDistribution distribution;
+        private final Duration timeout;
+        private final Histogram latencyMicros = new ConcurrentHistogram(3);
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong clientErrors = new AtomicLong();
+        private final AtomicLong serverErrors = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private long sent;
+        private long lateSends;
+
+        Phase(int port, String[] cities, KeyDistribution distribution, Duration timeout) {
+            this.uris = new URI[cities.length];
+            for (int i = 0; i < cities.length; i++) {
+                uris[i] = URI.create("http://localhost:" + port + "/weather?city=" + cities[i]);
+            }
+            this.distribution = distribution;
+            this.timeout = timeout;
+        }
+
+        void run(int rate, Duration duration) throws InterruptedException {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long count = duration.toSeconds() * rate;
+            List<CompletableFuture<?>> responses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (long i = 0; i < count; i++) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (wait < -intervalNanos) {
+                    lateSends++;
+                }
+                HttpRequest request = HttpRequest.newBuilder(uris[distribution.next()]).timeout(timeout).build();
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, failure) -> record(due, response, failure)));
+                sent++;
+            }
+            for (CompletableFuture<?> response : responses) {
+                try {
+                    response.get(timeout.toMillis() * 2, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // counted by record
+                }
+            }
+        }
+
+        private void record(long due, HttpResponse<?> response, Throwable failure) {
+            inFlight.decrementAndGet();
+            latencyMicros.recordValue(Math.max(0, (System.nanoTime() - due) / 1000));
+            if (failure != null) {
+                failures.incrementAndGet();
+            } else if (response.statusCode() < 400) {
+                ok.incrementAndGet();
+            } else if (response.statusCode() < 500) {
+                clientErrors.incrementAndGet();
+            } else {
+                serverErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private record Result(String mode, int rate, Phase phase, Duration duration,
+                          int geoCalls, int weatherCalls, double hitRatio) {
+        static final String HEADER = String.format("%-18s %6s %8s %6s %6s %6s %6s %8s %8s %8s %8s %8s %7s %7s %7s %6s",
+                "mode", "rate", "req/s", "2xx", "4xx", "5xx", "failed", "p50 ms", "p90 ms", "p99 ms", "p999 ms",
+                "max ms", "flight", "geo", "weather", "hits");
+
+        @Override
+        public String toString() {
+            Histogram latency = phase.latencyMicros;
+            long completed = phase.ok.get() + phase.clientErrors.get() + phase.serverErrors.get();
+            String row = String.format("%-18s %6d %8.1f %6d %6d %6d %6d %8.1f %8.1f %8.1f %8.1f %8.1f %7d %7d %7d %5.1f%%",
+                    mode, rate, (double) completed / duration.toSeconds(),
+                    phase.ok.get(), phase.clientErrors.get(), phase.serverErrors.get(), phase.failures.get(),
+                    millis(latency, 50), millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1000.0, phase.maxInFlight.get(), geoCalls, weatherCalls, hitRatio * 100);
+            return phase.lateSends > phase.sent / 100
+                    ? row + String.format("%n  %d of %d requests were sent late; the client could not keep up the rate",
+                        phase.lateSends, phase.sent)
+                    : row;
+        }
+
+        private static double millis(Histogram latency, double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.service.impl.CityPopularityTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class CityPopularityTrackerTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final Duration TICK = Duration.ofMinutes(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void selectDue_ShouldPreferHotCitiesWithinBudget() {
+        CityPopularityTracker tracker = new CityPopularityTracker(Duration.ofMinutes(10), Duration.ofMinutes(9), clock::get);
+        for (int i = 0; i < 50; i++) {
+            tracker.recordAccess("London");
+        }
+        tracker.recordAccess("Paris");
+        tracker.recordRefresh("London");
+        tracker.recordRefresh("Paris");
+        clock.addAndGet(MINUTE);
+
+        List<String> due = tracker.selectDue(Set.of("London", "Paris", "Berlin"), 1, TICK);
+
+        assertEquals(List.of("London"), due);
+    }
+
+    @Test
+    void selectDue_ShouldSkipCitiesNobodyRequests() {
+        CityPopularityTracker tracker = new CityPopularityTracker(Duration.ofMinutes(10), Duration.ofMinutes(9), clock::get);
+        tracker.recordAccess("London");
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(60));
+
+        assertTrue(tracker.selectDue(Set.of("London"), 10, TICK).isEmpty());
+    }
+
+    /**
+     * Simulates two hours of Zipf-distributed traffic over 1000 cities with a 10 minute TTL
+     * and compares no polling, refreshing every cached city every 10 minutes, and
+     * popularity-adaptive refreshes with a budget of 20 calls per minute.
+     */
+    @Test
+    void simulation_ShouldKeepHitRatioHighWithinCallBudget() {
+        Result noPolling = simulate(Strategy.NONE);
+        Result fixed = simulate(Strategy.FIXED);
+        Result adaptive = simulate(Strategy.ADAPTIVE);
+        log.info("No polling: {}", noPolling);
+        log.info("Fixed 10 minute polling: {}", fixed);
+        log.info("Adaptive polling: {}", adaptive);
+
+        assertTrue(adaptive.maxRefreshesPerMinute() <= BUDGET, "Adaptive refreshes must stay within budget");
+        assertTrue(adaptive.hitRatio() > noPolling.hitRatio(), "Adaptive polling should improve the hit ratio");
+        assertTrue(adaptive.hitRatio() >= fixed.hitRatio() - 0.01,
+            "Adaptive polling should be about as good as refreshing everything");
+        assertTrue(adaptive.callsPerMinute() < fixed.callsPerMinute(),
+            "Adaptive polling should spend fewer upstream calls");
+    }
+
+    private static final int CITIES = 1000;
+    private static final int REQUESTS_PER_MINUTE = 300;
+    private static final int BUDGET = 20;
+    private static final int MINUTES = 120;
+    private static final int WARMUP_MINUTES = 20;
+    private static final long TTL = TimeUnit.MINUTES.toNanos(10);
+
+    private enum Strategy { NONE, FIXED, ADAPTIVE }
+
+    private record Result(double hitRatio, double callsPerMinute, int maxRefreshesPerMinute) {
+        @Override
+        public String toString() {
+            return String.format("hit ratio %.3f, %.1f upstream calls/min, max %d refreshes/min",
+                hitRatio, callsPerMinute, maxRefreshesPerMinute);
+        }
+    }
+
+    private Result simulate(Strategy strategy) {
+        AtomicLong simClock = new AtomicLong();
+        CityPopularityTracker tracker = new CityPopularityTracker(Duration.ofMinutes(10), Duration.ofMinutes(9), simClock::get);
+        Map<String, Long> cache = new HashMap<>();
+        double[] zipf = zipfCdf(CITIES, 1.0);
+        Random random = new Random(42);
+        long hits = 0;
+        long requests = 0;
+        long calls = 0;
+        int maxRefreshes = 0;
+
+        for (int minute = 0; minute < MINUTES; minute++) {
+            boolean measured = minute >= WARMUP_MINUTES;
+            long minuteStart = (long) minute * MINUTE;
+            for (int r = 0; r < REQUESTS_PER_MINUTE; r++) {
+                simClock.set(minuteStart + r * (MINUTE / REQUESTS_PER_MINUTE));
+                String city = "City" + sample(zipf, random);
+                tracker.recordAccess(city);
+                Long written = cache.get(city);
+                boolean hit = written != null && simClock.get() - written < TTL;
+                if (!hit) {
+                    cache.put(city, simClock.get());
+                    tracker.recordRefresh(city);
+                }
+                if (measured) {
+                    requests++;
+                    hits += hit ? 1 : 0;
+                    calls += hit ? 0 : 1;
+                }
+            }
+
+            simClock.set(minuteStart + MINUTE);
+            long now = simClock.get();
+            cache.values().removeIf(written -> now - written >= TTL);
+            List<String> refreshed = switch (strategy) {
+                case NONE -> List.of();
+                case FIXED -> minute % 10 == 9 ? List.copyOf(cache.keySet()) : List.of();
+                case ADAPTIVE -> tracker.selectDue(cache.keySet(), BUDGET, TICK);
+            };
+            for (String city : refreshed) {
+                cache.put(city, now);
+                tracker.recordRefresh(city);
+            }
+            if (measured) {
+                calls += refreshed.size();
+                if (strategy == Strategy.ADAPTIVE) {
+                    maxRefreshes = Math.max(maxRefreshes, refreshed.size());
+                }
+            }
+        }
+        int measuredMinutes = MINUTES - WARMUP_MINUTES;
+        return new Result((double) hits / requests, (double) calls / measuredMinutes, maxRefreshes);
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return idx >= 0 ? idx : -idx - 1;
+    }
+}
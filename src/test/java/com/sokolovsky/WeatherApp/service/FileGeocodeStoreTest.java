@@ -0,0 +1,139 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
+import com.sokolovsky.WeatherApp.service.impl.FileGeocodeStore;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class FileGeocodeStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void save_ShouldPersistLocationAcrossRestarts() {
+        Path file = dir.resolve("geocode.log");
+        FileGeocodeStore store = new FileGeocodeStore(file, 0);
+        store.save("London", location("London", "51.5073219", "-0.1276474", "GB", "England"));
+        store.close();
+
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 0);
+        GeocodingDTO london = reloaded.find("London").orElseThrow();
+
+        assertEquals("London", london.getName());
+        assertEquals(new BigDecimal("51.5073219"), london.getLat());
+        assertEquals(new BigDecimal("-0.1276474"), london.getLon());
+        assertEquals("GB", london.getCountry());
+        assertEquals("England", london.getState());
+        reloaded.close();
+    }
+
+    @Test
+    void save_ShouldBoundEntriesAndFileSize() throws Exception {
+        Path file = dir.resolve("geocode.log");
+        FileGeocodeStore store = new FileGeocodeStore(file, 10);
+        for (int i = 0; i < 50; i++) {
+            store.save("City" + i, location("City" + i, "1.5", "2.5", "XX", null));
+        }
+        long sizeBeforeCompaction = Files.size(file);
+        store.compact();
+        store.close();
+
+        assertTrue(Files.size(file) < sizeBeforeCompaction, "Compaction should shrink the file");
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 10);
+        assertEquals(10, reloaded.size());
+        assertTrue(reloaded.find("City0").isEmpty(), "Oldest entries should be dropped");
+        assertTrue(reloaded.find("City49").isPresent());
+        reloaded.close();
+    }
+
+    @Test
+    void load_ShouldIgnoreTruncatedTail() throws Exception {
+        Path file = dir.resolve("geocode.log");
+        FileGeocodeStore store = new FileGeocodeStore(file, 0);
+        store.save("Paris", location("Paris", "48.8588897", "2.3200410", "FR", null));
+        store.close();
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 0);
+        assertTrue(reloaded.find("Paris").isPresent());
+        reloaded.save("Berlin", location("Berlin", "52.5170365", "13.3888599", "DE", null));
+        reloaded.close();
+
+        assertEquals(2, new FileGeocodeStore(file, 0).size());
+    }
+
+    @Test
+    void load_ShouldStopAtInvalidRecordLength() throws Exception {
+        Path file = dir.resolve("geocode.log");
+        FileGeocodeStore store = new FileGeocodeStore(file, 0);
+        store.save("Paris", location("Paris", "48.8588897", "2.3200410", "FR", null));
+        store.close();
+        Files.write(file, new byte[]{0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2}, StandardOpenOption.APPEND);
+
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 0);
+        assertTrue(reloaded.find("Paris").isPresent());
+        reloaded.save("Berlin", location("Berlin", "52.5170365", "13.3888599", "DE", null));
+        reloaded.close();
+
+        assertEquals(2, new FileGeocodeStore(file, 0).size());
+    }
+
+    @Test
+    void load_ShouldKeepEntriesBeforeMalformedRecord() throws Exception {
+        Path file = dir.resolve("geocode.log");
+        FileGeocodeStore store = new FileGeocodeStore(file, 0);
+        store.save("Paris", location("Paris", "48.8588897", "2.3200410", "FR", null));
+        store.close();
+        long validBytes = Files.size(file);
+        // The city claims 10 UTF-8 bytes but the record only holds one
+        Files.write(file, new byte[]{0, 0, 0, 3, 0, 10, 'R', 0, 0, 0, 1, 7}, StandardOpenOption.APPEND);
+
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 0);
+        assertTrue(reloaded.find("Paris").isPresent());
+        assertEquals(validBytes, Files.size(file), "The log should be cut at the last good record");
+        reloaded.save("Berlin", location("Berlin", "52.5170365", "13.3888599", "DE", null));
+        reloaded.close();
+
+        assertEquals(2, new FileGeocodeStore(file, 0).size());
+    }
+
+    @Test
+    void load_ShouldWarmUpHundredThousandEntriesQuickly() {
+        Path file = dir.resolve("geocode.log");
+        int count = 100_000;
+        FileGeocodeStore store = new FileGeocodeStore(file, 0);
+        for (int i = 0; i < count; i++) {
+            store.save("City" + i, location("City" + i, "51.5073219", "-0.1276474", "GB", "England"));
+        }
+        store.close();
+
+        long start = System.nanoTime();
+        FileGeocodeStore reloaded = new FileGeocodeStore(file, 0);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Loaded {} geocode entries in {} ms", count, elapsedMillis);
+
+        assertEquals(count, reloaded.size());
+        assertTrue(elapsedMillis < 5_000, "Loading " + count + " entries took " + elapsedMillis + " ms");
+        reloaded.close();
+    }
+
+    private static GeocodingDTO location(String name, String lat, String lon, String country, String state) {
+        GeocodingDTO location = new GeocodingDTO();
+        location.setName(name);
+        location.setLat(new BigDecimal(lat));
+        location.setLon(new BigDecimal(lon));
+        location.setCountry(country);
+        location.setState(state);
+        return location;
+    }
+}
@@ -0,0 +1,138 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.impl.OffHeapWeatherCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapWeatherCacheTest {
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final List<String> removed = new ArrayList<>();
+    private final List<RemovalCause> causes = new ArrayList<>();
+
+    private OffHeapWeatherCache cache(int capacity, Duration ttl) {
+        return new OffHeapWeatherCache(capacity, ttl, new ConcurrentStatsCounter(), (city, cause) -> {
+            removed.add(city);
+            causes.add(cause);
+        }, clock::get);
+    }
+
+    private RenderedWeather weather(String city, double temp) {
+        WeatherDTO.Weather condition = new WeatherDTO.Weather();
+        condition.setMain("Clouds");
+        condition.setDescription("overcast clouds");
+        WeatherDTO.Main main = new WeatherDTO.Main();
+        main.setTemp(temp);
+        WeatherDTO dto = new WeatherDTO();
+        dto.setWeatherList(List.of(condition));
+        dto.setMain(main);
+        dto.setDt(1740934487L);
+        dto.setName(city);
+        byte[] json = ("{\"name\":\"" + city + "\",\"temp\":" + temp + "}").getBytes(StandardCharsets.UTF_8);
+        return new RenderedWeather(WeatherSnapshot.of(dto), json, "\"67c4a3d7-" + city.length() + "\"",
+            clock.get(), clock.get() + 1000);
+    }
+
+    @Test
+    void put_ShouldStoreEntryOffHeap() {
+        OffHeapWeatherCache cache = cache(10, Duration.ofMinutes(10));
+        RenderedWeather london = weather("London", 9.84);
+
+        assertNull(cache.put("London", london));
+        RenderedWeather cached = cache.getIfPresent("London");
+
+        assertEquals(london.snapshot(), cached.snapshot());
+        assertArrayEquals(london.json(), cached.json());
+        assertEquals(london.etag(), cached.etag());
+        assertEquals(london.fetchedAtMillis(), cached.fetchedAtMillis());
+        assertEquals(london.expiresAtMillis(), cached.expiresAtMillis());
+        assertEquals(london.snapshot(), cache.put("London", weather("London", 12.0)).snapshot());
+        assertEquals(12.0, cache.peek("London").snapshot().temp());
+        assertEquals(Set.of("London"), cache.cities());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void put_ShouldKeepFurtherConditions() {
+        OffHeapWeatherCache cache = cache(10, Duration.ofMinutes(10));
+        RenderedWeather bergen = weather("Bergen", 7.0);
+        WeatherDTO dto = bergen.snapshot().toDto();
+        WeatherDTO.Weather mist = new WeatherDTO.Weather();
+        mist.setMain("Mist");
+        mist.setDescription("mist");
+        dto.setWeatherList(List.of(dto.getWeatherList().get(0), mist));
+        RenderedWeather misty = new RenderedWeather(WeatherSnapshot.of(dto), bergen.json(), bergen.etag(),
+            bergen.fetchedAtMillis(), bergen.expiresAtMillis());
+
+        cache.put("Bergen", misty);
+
+        assertEquals(dto, cache.getIfPresent("Bergen").snapshot().toDto());
+    }
+
+    @Test
+    void getIfPresent_ShouldMissAfterTtl() {
+        OffHeapWeatherCache cache = cache(10, Duration.ofSeconds(10));
+        cache.put("London", weather("London", 9.84));
+
+        clock.addAndGet(10_000);
+
+        assertNull(cache.getIfPresent("London"));
+        assertTrue(cache.cities().isEmpty());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void put_ShouldReportExpiredEntry_WhenOverwritten() {
+        OffHeapWeatherCache cache = cache(10, Duration.ofSeconds(10));
+        cache.put("London", weather("London", 9.84));
+        clock.addAndGet(10_000);
+
+        assertNull(cache.put("London", weather("London", 12.0)), "An expired entry is no previous value");
+
+        assertEquals(List.of("London"), removed);
+        assertEquals(List.of(RemovalCause.EXPIRED), causes);
+        assertEquals(1, cache.stats().evictionCount());
+        assertEquals(12.0, cache.peek("London").snapshot().temp());
+    }
+
+    @Test
+    void put_ShouldEvictEntryNotReadSinceLastSweep() {
+        OffHeapWeatherCache cache = cache(2, Duration.ZERO);
+        cache.put("London", weather("London", 9.84));
+        cache.put("Paris", weather("Paris", 11.0));
+        cache.getIfPresent("London");
+
+        cache.put("Berlin", weather("Berlin", 7.5));
+
+        assertEquals(List.of("Paris"), removed);
+        assertEquals(Set.of("London", "Berlin"), cache.cities());
+        assertEquals(1, cache.stats().evictionCount());
+    }
+
+    @Test
+    void put_ShouldSkipEntriesLargerThanSlot() {
+        OffHeapWeatherCache cache = cache(10, Duration.ZERO);
+        cache.put("London", weather("London", 9.84));
+        RenderedWeather large = weather("London", 9.84);
+        large = new RenderedWeather(large.snapshot(), new byte[OffHeapWeatherCache.SLOT_BYTES], large.etag(), 0, 0);
+
+        RenderedWeather previous = cache.put("London", large);
+
+        assertEquals(9.84, previous.snapshot().temp());
+        assertNull(cache.getIfPresent("London"), "Previous entry should not be served");
+        assertEquals(List.of("London"), removed);
+        assertEquals(List.of(RemovalCause.SIZE), causes);
+        assertEquals(1, cache.getRejectedCount());
+    }
+}
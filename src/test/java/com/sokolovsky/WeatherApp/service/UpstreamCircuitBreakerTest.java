@@ -0,0 +1,121 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.service.impl.UpstreamCircuitBreaker;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamCircuitBreakerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final UpstreamCircuitBreaker breaker =
+        new UpstreamCircuitBreaker(3, Duration.ofSeconds(5), Duration.ofSeconds(15), clock::get);
+
+    private long acquire() {
+        long permit = breaker.tryAcquire();
+        assertNotEquals(UpstreamCircuitBreaker.REJECTED, permit);
+        return permit;
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onFailure(acquire());
+        }
+    }
+
+    @Test
+    void tryAcquire_ShouldRejectCalls_AfterConsecutiveFailures() {
+        fail(2);
+        breaker.onSuccess(acquire());
+        fail(2);
+        assertEquals(State.CLOSED, breaker.getState());
+
+        fail(1);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(UpstreamCircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+        assertEquals(Duration.ofSeconds(5), breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    void tryAcquire_ShouldLetSingleProbeThrough_AfterOpenTime() {
+        fail(3);
+        clock.addAndGet(5 * SECOND);
+
+        long probe = acquire();
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertEquals(UpstreamCircuitBreaker.REJECTED, breaker.tryAcquire(), "Only one probe should be in flight");
+
+        breaker.onSuccess(probe);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        acquire();
+    }
+
+    @Test
+    void onFailure_ShouldDoubleOpenTime_AfterFailedProbes() {
+        fail(3);
+        for (long expectedSeconds : new long[]{10, 15, 15}) {
+            clock.addAndGet(breaker.getRemainingOpenTime().toNanos());
+            fail(1);
+            assertEquals(State.OPEN, breaker.getState());
+            assertEquals(Duration.ofSeconds(expectedSeconds), breaker.getRemainingOpenTime());
+        }
+        assertEquals(4, breaker.getOpenedCount());
+
+        clock.addAndGet(15 * SECOND);
+        breaker.onSuccess(acquire());
+        fail(3);
+        assertEquals(Duration.ofSeconds(5), breaker.getRemainingOpenTime(), "Backoff should reset after recovery");
+    }
+
+    @Test
+    void release_ShouldFreeProbe_WhenCallWasNotSent() {
+        fail(3);
+        clock.addAndGet(5 * SECOND);
+        long probe = acquire();
+
+        breaker.release(probe);
+
+        acquire();
+    }
+
+    @Test
+    void getState_ShouldBeHalfOpen_OnceOpenTimeHasPassed() {
+        fail(3);
+        clock.addAndGet(5 * SECOND - 1);
+        assertEquals(State.OPEN, breaker.getState());
+
+        clock.incrementAndGet();
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertEquals(Duration.ZERO, breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    void onSuccess_ShouldIgnoreCalls_StartedBeforeBreakerOpened() {
+        long slow = acquire();
+        fail(3);
+
+        breaker.onSuccess(slow);
+
+        assertEquals(State.OPEN, breaker.getState());
+        clock.addAndGet(5 * SECOND);
+        long probe = acquire();
+        breaker.onFailure(slow);
+        assertEquals(State.HALF_OPEN, breaker.getState(), "A stale failure should not fail the probe");
+        breaker.release(slow);
+        assertEquals(UpstreamCircuitBreaker.REJECTED, breaker.tryAcquire(), "A stale release should not free the probe");
+
+        breaker.onSuccess(probe);
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+}
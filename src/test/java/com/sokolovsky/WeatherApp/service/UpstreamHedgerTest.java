@@ -0,0 +1,222 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.service.impl.UpstreamHedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamHedgerTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong clock = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Supplier<String> sleeping(long millis, String result) {
+        return () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Cancelled");
+            }
+            return result;
+        };
+    }
+
+    private static void warmUp(UpstreamHedger hedger) {
+        for (int i = 0; i < 20; i++) {
+            hedger.call(() -> "fast", () -> fail("Fast calls should not be hedged"), () -> true);
+        }
+    }
+
+    /**
+     * Records the given latencies on the test clock, one call each, none of them hedged.
+     */
+    private void warmUp(UpstreamHedger hedger, long... latencyMillis) {
+        for (long millis : latencyMillis) {
+            hedger.call(() -> {
+                clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+                return "fast";
+            }, () -> fail("Warm-up calls should not be hedged"), () -> true);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "Timed out waiting for another attempt");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cancelled");
+        }
+    }
+
+    @Test
+    void call_ShouldHedgeOnceTheDelayHasPassed() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.9, Duration.ofMillis(1), 1.0, clock::get);
+        warmUp(hedger, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+        assertEquals(Duration.ofMillis(18), hedger.getHedgeDelay(), "Delay should be the 90th percentile");
+        CountDownLatch hedgeStarted = new CountDownLatch(1);
+        AtomicLong hedgeStartNanos = new AtomicLong();
+
+        long start = System.nanoTime();
+        String result = hedger.call(() -> {
+            await(hedgeStarted);
+            return "first";
+        }, () -> {
+            hedgeStartNanos.set(System.nanoTime());
+            hedgeStarted.countDown();
+            return "hedge";
+        }, () -> true);
+
+        assertTrue(hedgeStartNanos.get() - start >= TimeUnit.MILLISECONDS.toNanos(18),
+            "Hedge should not start before the delay");
+        assertEquals(1, hedger.getHedgedCount());
+        assertEquals("hedge".equals(result) ? 1 : 0, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    void call_ShouldReturnFirstResponse_WhenItArrivesAfterHedgeStarted() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.5, Duration.ofMillis(1), 1.0, clock::get);
+        warmUp(hedger, new long[20]);
+        CountDownLatch hedgeStarted = new CountDownLatch(1);
+        CountDownLatch hedgeCancelled = new CountDownLatch(1);
+
+        String result = hedger.call(() -> {
+            await(hedgeStarted);
+            return "first";
+        }, () -> {
+            hedgeStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                hedgeCancelled.countDown();
+            }
+            return "hedge";
+        }, () -> true);
+
+        assertEquals("first", result);
+        assertEquals(1, hedger.getHedgedCount());
+        assertEquals(0, hedger.getHedgeWinCount());
+        await(hedgeCancelled);
+    }
+
+    @Test
+    void call_ShouldReturnHedgedResultAndCancelFirstAttempt_WhenFirstAttemptIsSlow() throws Exception {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.95, Duration.ofMillis(10), 0.5);
+        warmUp(hedger);
+        assertEquals(Duration.ofMillis(10), hedger.getHedgeDelay());
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        String result = hedger.call(() -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+            }
+            return "slow";
+        }, () -> "hedge", () -> true);
+
+        assertEquals("hedge", result);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS), "Slow attempt should be cancelled");
+        assertEquals(1, hedger.getHedgedCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    void call_ShouldNotHedgeMoreThanMaxRate() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.5, Duration.ofMillis(1), 0.1, clock::get);
+        warmUp(hedger, new long[20]);
+
+        for (int i = 0; i < 10; i++) {
+            // every first attempt outlasts the delay and only returns once the hedge was decided
+            CountDownLatch decided = new CountDownLatch(1);
+            hedger.call(() -> {
+                await(decided);
+                return "first";
+            }, () -> "hedge", () -> {
+                decided.countDown();
+                return true;
+            });
+        }
+
+        assertEquals(30, hedger.getCallCount());
+        assertEquals(3, hedger.getHedgedCount(), "30 calls at a rate of 0.1 earn 3 hedges");
+    }
+
+    @Test
+    void call_ShouldNotHedge_WhenNotAllowed() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.5, Duration.ofMillis(1), 1.0);
+        warmUp(hedger);
+
+        assertEquals("slow", hedger.call(sleeping(30, "slow"), () -> "hedge", () -> false));
+
+        assertEquals(0, hedger.getHedgedCount());
+    }
+
+    @Test
+    void call_ShouldThrowFirstFailure_WhenBothAttemptsFail() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.5, Duration.ofMillis(1), 1.0);
+        warmUp(hedger);
+        AtomicInteger attempts = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> hedger.call(() -> {
+            attempts.incrementAndGet();
+            sleeping(50, null).get();
+            throw new IllegalStateException("first");
+        }, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("hedge");
+        }, () -> true));
+
+        assertEquals("first", e.getMessage());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void call_ShouldNotHedge_WhenFirstAttemptFailsWhileDecidingToHedge() {
+        UpstreamHedger hedger = new UpstreamHedger(executor, 0.5, Duration.ofMillis(1), 1.0);
+        warmUp(hedger);
+        CountDownLatch firstFailed = new CountDownLatch(1);
+        AtomicInteger hedges = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> hedger.call(() -> {
+            sleeping(20, null).get();
+            firstFailed.countDown();
+            throw new IllegalStateException("first");
+        }, () -> {
+            hedges.incrementAndGet();
+            return "hedge";
+        }, () -> {
+            try {
+                // let the first attempt fail after the hedge was found due
+                return firstFailed.await(2, TimeUnit.SECONDS) && sleepBriefly();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }));
+
+        assertEquals("first", e.getMessage());
+        assertEquals(0, hedger.getHedgedCount());
+        assertEquals(0, hedges.get());
+    }
+
+    private static boolean sleepBriefly() throws InterruptedException {
+        Thread.sleep(50);
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.service.impl.UpstreamRateLimiter;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamRateLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamRateLimiterTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void tryAcquire_ShouldRefillAtConfiguredRate() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(60, 2, 0, clock::get);
+
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertFalse(limiter.tryAcquire(Priority.ON_DEMAND));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertFalse(limiter.tryAcquire(Priority.ON_DEMAND));
+
+        assertEquals(3, limiter.getGrantedCount());
+        assertEquals(2, limiter.getRejectedCount(Priority.ON_DEMAND));
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepReserveForOnDemandCalls() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(60, 10, 0.2, clock::get);
+
+        int background = 0;
+        while (limiter.tryAcquire(Priority.BACKGROUND)) {
+            background++;
+        }
+
+        assertEquals(8, background);
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertFalse(limiter.tryAcquire(Priority.ON_DEMAND));
+        assertEquals(1, limiter.getRejectedCount(Priority.BACKGROUND));
+    }
+
+    @Test
+    void acquire_ShouldWaitForNextToken() throws Exception {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(600, 1, 0);
+
+        assertTrue(limiter.tryAcquire(Priority.ON_DEMAND));
+        long start = System.nanoTime();
+        assertTrue(limiter.acquire(Priority.ON_DEMAND, Duration.ofSeconds(1)));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, limiter.getWaitedCount());
+        assertFalse(limiter.acquire(Priority.ON_DEMAND, Duration.ofMillis(10)));
+    }
+}
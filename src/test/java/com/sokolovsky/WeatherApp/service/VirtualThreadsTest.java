@@ -0,0 +1,113 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.service.impl.VirtualThreads;
+import com.sokolovsky.WeatherApp.service.impl.WeatherFetchExecutorImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+class VirtualThreadsTest {
+    // Set by the jdk21 Maven profile, so the virtual-thread tests fail instead of being skipped there
+    private static final boolean REQUIRED = Boolean.getBoolean("weather.test.virtual-threads");
+
+    @Test
+    void factory_ShouldCreateNamedDaemonPlatformThreads() {
+        Thread thread = VirtualThreads.factory("test-", false).newThread(() -> { });
+
+        assertEquals("test-1", thread.getName());
+        assertTrue(thread.isDaemon());
+        assertFalse(isVirtual(thread));
+    }
+
+    @Test
+    void factory_ShouldCreateVirtualThreads_WhenSupported() {
+        assumeVirtualThreads();
+
+        Thread thread = VirtualThreads.factory("test-", true).newThread(() -> { });
+
+        assertEquals("test-1", thread.getName());
+        assertTrue(isVirtual(thread));
+    }
+
+    @Test
+    void factory_ShouldFallBackToPlatformThreads_WhenNotSupported() throws Exception {
+        assumeFalse(VirtualThreads.isSupported());
+        ThreadFactory factory = VirtualThreads.factory("test-", true);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        Thread thread = factory.newThread(ran::countDown);
+        thread.start();
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertTrue(thread.isDaemon());
+        assertFalse(VirtualThreads.isEnabled(true));
+    }
+
+    @Test
+    void fetchExecutor_ShouldNotLimitFetches_OnVirtualThreads() throws Exception {
+        assumeVirtualThreads();
+        WeatherFetchExecutorImpl executor = new WeatherFetchExecutorImpl(1, true);
+        int fetches = 1000;
+        CountDownLatch started = new CountDownLatch(fetches);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < fetches; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS), "All fetches should run at once");
+        assertEquals(fetches, executor.getActiveTaskCount());
+        assertEquals(0, executor.getQueuedTaskCount());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void fetchExecutor_ShouldKeepPoolSize_WithoutVirtualThreads() throws Exception {
+        assumeFalse(VirtualThreads.isSupported());
+        WeatherFetchExecutorImpl executor = new WeatherFetchExecutorImpl(1, true);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> { });
+
+        assertEquals(1, executor.getQueuedTaskCount());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private static void assumeVirtualThreads() {
+        if (REQUIRED) {
+            assertTrue(VirtualThreads.isSupported(), "Virtual threads should be supported on Java 21");
+        }
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21");
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.CityWeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.impl.WeatherBatchServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherBatchServiceTest {
+
+    @Mock
+    private WeatherService weatherService;
+
+    private static RenderedWeather weather(double temp) {
+        WeatherDTO.Main main = new WeatherDTO.Main();
+        main.setTemp(temp);
+        WeatherDTO dto = new WeatherDTO();
+        dto.setMain(main);
+        dto.setDt(1740934487L);
+        byte[] json = ("{\"temp\":" + temp + "}").getBytes(StandardCharsets.UTF_8);
+        return new RenderedWeather(WeatherSnapshot.of(dto), json, "\"67c4a3d7-1\"", 0, 0);
+    }
+
+    @Test
+    void getWeatherData_ShouldCollapseDuplicatesAndReportErrorsPerCity() throws Exception {
+        when(weatherService.getRenderedWeatherAsync("London"))
+                .thenReturn(CompletableFuture.completedFuture(weather(12.5)));
+        when(weatherService.getRenderedWeatherAsync("Oslo"))
+                .thenReturn(CompletableFuture.completedFuture(weather(-3.0).asStale()));
+        when(weatherService.getRenderedWeatherAsync("Atlantis"))
+                .thenReturn(CompletableFuture.failedFuture(new WeatherApiException("City not found: Atlantis")));
+        when(weatherService.getRenderedWeatherAsync("Paris"))
+                .thenReturn(CompletableFuture.failedFuture(new RateLimitExceededException("Upstream rate limit exceeded")));
+
+        List<CityWeatherDTO> results = new WeatherBatchServiceImpl(4)
+                .getWeatherData(weatherService, List.of("London", "Atlantis", " London ", "", "Paris", "Oslo"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("London", "Atlantis", "Paris", "Oslo"),
+            results.stream().map(CityWeatherDTO::getCity).toList());
+        assertEquals(12.5, results.get(0).getWeather().getMain().getTemp());
+        assertEquals(200, results.get(0).getStatus());
+        assertNull(results.get(0).getStale());
+        assertEquals(400, results.get(1).getStatus());
+        assertEquals("City not found: Atlantis", results.get(1).getError());
+        assertEquals(429, results.get(2).getStatus());
+        assertEquals(200, results.get(3).getStatus());
+        assertEquals(Boolean.TRUE, results.get(3).getStale(), "Stale data should be marked in its result");
+        verify(weatherService, times(1)).getRenderedWeatherAsync("London");
+    }
+
+    @Test
+    void getWeatherData_ShouldLimitConcurrentFetches() throws Exception {
+        Map<String, CompletableFuture<RenderedWeather>> pending = new HashMap<>();
+        when(weatherService.getRenderedWeatherAsync(anyString())).thenAnswer(invocation -> {
+            String city = invocation.getArgument(0);
+            if (city.startsWith("Cached")) {
+                return CompletableFuture.completedFuture(weather(20.0));
+            }
+            CompletableFuture<RenderedWeather> future = new CompletableFuture<>();
+            pending.put(city, future);
+            return future;
+        });
+
+        CompletableFuture<List<CityWeatherDTO>> batch = new WeatherBatchServiceImpl(2)
+                .getWeatherData(weatherService, List.of("A", "Cached1", "B", "Cached2", "C", "D"));
+
+        assertEquals(2, pending.size(), "Only two misses should be fetched at once");
+        verify(weatherService).getRenderedWeatherAsync("Cached1");
+        verify(weatherService, never()).getRenderedWeatherAsync("C");
+
+        pending.get("A").complete(weather(20.0));
+        verify(weatherService).getRenderedWeatherAsync("Cached2");
+        verify(weatherService).getRenderedWeatherAsync("C");
+        verify(weatherService, never()).getRenderedWeatherAsync("D");
+
+        pending.get("B").complete(weather(20.0));
+        pending.get("C").complete(weather(20.0));
+        pending.get("D").complete(weather(20.0));
+
+        List<CityWeatherDTO> results = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(6, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == 200));
+    }
+}
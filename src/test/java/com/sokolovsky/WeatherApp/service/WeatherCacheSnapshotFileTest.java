@@ -0,0 +1,168 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.impl.CaffeineWeatherCache;
+import com.sokolovsky.WeatherApp.service.impl.WeatherCacheSnapshotFile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class WeatherCacheSnapshotFileTest {
+    private static final int CITIES = 100_000;
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    @TempDir
+    Path dir;
+
+    private static WeatherCache cache() {
+        return new CaffeineWeatherCache(Caffeine.newBuilder().build());
+    }
+
+    private static RenderedWeather weather(String city, long fetchedAt) {
+        WeatherDTO.Weather condition = new WeatherDTO.Weather();
+        condition.setMain("Clouds");
+        condition.setDescription("overcast clouds");
+        WeatherDTO.Main main = new WeatherDTO.Main();
+        main.setTemp(9.84);
+        main.setFeelsLike(7.51);
+        WeatherDTO dto = new WeatherDTO();
+        WeatherDTO.Weather mist = new WeatherDTO.Weather();
+        mist.setMain("Mist");
+        mist.setDescription("mist");
+        // Cities with an even-length name report a second condition, which the snapshot must keep
+        dto.setWeatherList(city.length() % 2 == 0 ? List.of(condition, mist) : List.of(condition));
+        dto.setMain(main);
+        dto.setVisibility(10000);
+        dto.setDt(1740934487L);
+        dto.setTimezone(0);
+        dto.setName(city);
+        byte[] json = ("{\"weather\":{\"main\":\"Clouds\",\"description\":\"overcast clouds\"},"
+                + "\"temperature\":{\"temp\":9.84,\"feels_like\":7.51},\"visibility\":10000,"
+                + "\"datetime\":1740934487,\"timezone\":0,\"name\":\"" + city + "\"}").getBytes(StandardCharsets.UTF_8);
+        return new RenderedWeather(WeatherSnapshot.of(dto), json, "\"67c4a3d7-1a2b3c4d\"", fetchedAt, fetchedAt + 60_000);
+    }
+
+    @Test
+    void load_ShouldRestoreSavedEntries() throws Exception {
+        long now = System.currentTimeMillis();
+        WeatherCache cache = cache();
+        for (int i = 0; i < CITIES; i++) {
+            cache.put("City" + i, weather("City" + i, now - i));
+        }
+        WeatherCacheSnapshotFile file = new WeatherCacheSnapshotFile(dir.resolve("cache.bin"));
+        assertEquals(CITIES, file.save(cache));
+
+        Map<String, RenderedWeather> restored = new HashMap<>();
+        long start = System.nanoTime();
+        int loaded = file.load(TTL, restored::put);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Restored {} entries from a {} KB snapshot in {} ms",
+            loaded, Files.size(file.getFile()) / 1024, millis);
+
+        assertEquals(CITIES, loaded);
+        RenderedWeather expected = cache.peek("City42");
+        RenderedWeather actual = restored.get("City42");
+        assertEquals(expected.snapshot(), actual.snapshot());
+        assertEquals(2, actual.snapshot().toDto().getWeatherList().size());
+        assertArrayEquals(expected.json(), actual.json());
+        assertEquals(expected.etag(), actual.etag());
+        assertEquals(expected.fetchedAtMillis(), actual.fetchedAtMillis());
+        assertEquals(expected.expiresAtMillis(), actual.expiresAtMillis());
+        assertTrue(millis < 2000, "Restoring took " + millis + " ms");
+    }
+
+    @Test
+    void load_ShouldSkipEntriesOlderThanTtl() throws Exception {
+        long now = System.currentTimeMillis();
+        WeatherCache cache = cache();
+        cache.put("Fresh", weather("Fresh", now - TTL / 2));
+        cache.put("Expired", weather("Expired", now - TTL));
+        WeatherCacheSnapshotFile file = new WeatherCacheSnapshotFile(dir.resolve("cache.bin"));
+        file.save(cache);
+
+        Map<String, RenderedWeather> restored = new HashMap<>();
+        file.load(TTL, restored::put);
+
+        assertEquals(List.of("Fresh"), List.copyOf(restored.keySet()));
+    }
+
+    @Test
+    void load_ShouldIgnoreMissingOrDamagedFile() throws Exception {
+        WeatherCacheSnapshotFile file = new WeatherCacheSnapshotFile(dir.resolve("cache.bin"));
+        assertEquals(0, file.load(TTL, (city, weather) -> fail("Nothing to restore")));
+
+        WeatherCache cache = cache();
+        cache.put("London", weather("London", System.currentTimeMillis()));
+        file.save(cache);
+        byte[] bytes = Files.readAllBytes(file.getFile());
+        Files.write(file.getFile(), Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertEquals(0, file.load(TTL, (city, weather) -> fail("Damaged snapshot should not be restored")));
+    }
+
+    @Test
+    void load_ShouldRejectCorruptCountsAndLengths() throws Exception {
+        WeatherCacheSnapshotFile file = new WeatherCacheSnapshotFile(dir.resolve("cache.bin"));
+        WeatherCache cache = cache();
+        cache.put("London", weather("London", System.currentTimeMillis()));
+        file.save(cache);
+        byte[] bytes = Files.readAllBytes(file.getFile());
+
+        // entry count, then the length of the first city name
+        for (int offset : new int[]{4, 8}) {
+            for (int value : new int[]{Integer.MAX_VALUE, -5}) {
+                byte[] corrupt = bytes.clone();
+                ByteBuffer.wrap(corrupt).putInt(offset, value);
+                Files.write(file.getFile(), corrupt);
+
+                assertEquals(0, file.load(TTL, (city, weather) -> fail("Corrupt snapshot should not be restored")));
+            }
+        }
+    }
+
+    @Test
+    void save_ShouldNotInterleave_WhenInstancesShareAFile() throws Exception {
+        long now = System.currentTimeMillis();
+        WeatherCache full = cache();
+        for (int i = 0; i < 1000; i++) {
+            full.put("City" + i, weather("City" + i, now));
+        }
+        WeatherCache small = cache();
+        small.put("London", weather("London", now));
+        WeatherCacheSnapshotFile first = new WeatherCacheSnapshotFile(dir.resolve("cache.bin"));
+        WeatherCacheSnapshotFile second = new WeatherCacheSnapshotFile(dir.resolve("./cache.bin"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> saves = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            saves.add(executor.submit(() -> first.save(full)));
+            saves.add(executor.submit(() -> second.save(small)));
+        }
+        for (Future<?> save : saves) {
+            save.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int loaded = first.load(TTL, (city, weather) -> { });
+        assertTrue(loaded == 1000 || loaded == 1, "Loaded " + loaded + " entries");
+    }
+}
@@ -0,0 +1,87 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.dto.WeatherHistoryDTO;
+import com.sokolovsky.WeatherApp.dto.WeatherSnapshot;
+import com.sokolovsky.WeatherApp.service.impl.WeatherHistory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherHistoryTest {
+    private static final long START = 1740934487L;
+    private static final long STEP = 600;
+
+    private static WeatherSnapshot observation(long datetime, double temp) {
+        return new WeatherSnapshot("Clouds", "overcast clouds", temp, temp - 2, 10000, 3.1,
+            datetime, 0, 0, 0, "London", (short) 0);
+    }
+
+    @Test
+    void get_ShouldKeepOnlyLastObservationsInOrder() {
+        WeatherHistory history = new WeatherHistory(4, 10);
+        for (int i = 0; i < 10; i++) {
+            history.record("London", observation(START + i * STEP, i));
+        }
+
+        WeatherHistoryDTO all = history.get("London", Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertArrayEquals(new long[]{START + 6 * STEP, START + 7 * STEP, START + 8 * STEP, START + 9 * STEP},
+            all.datetime());
+        assertArrayEquals(new double[]{6, 7, 8, 9}, all.temp());
+        assertArrayEquals(new double[]{4, 5, 6, 7}, all.feelsLike());
+        assertArrayEquals(new int[]{10000, 10000, 10000, 10000}, all.visibility());
+    }
+
+    @Test
+    void get_ShouldReturnObservationsWithinWindow() {
+        WeatherHistory history = new WeatherHistory(8, 10);
+        for (int i = 0; i < 11; i++) {
+            history.record("London", observation(START + i * STEP, i));
+        }
+
+        WeatherHistoryDTO window = history.get("London", START + 5 * STEP, START + 7 * STEP + 1);
+
+        assertArrayEquals(new double[]{5, 6, 7}, window.temp());
+        assertEquals(0, history.get("London", START + 20 * STEP, Long.MAX_VALUE).size());
+        assertEquals(0, history.get("London", START, START + STEP).size());
+        assertNull(history.get("Paris", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void record_ShouldSkipRepeatedObservations() {
+        WeatherHistory history = new WeatherHistory(4, 10);
+        history.record("London", observation(START, 10));
+        history.record("London", observation(START, 10));
+        history.record("London", observation(START - STEP, 9));
+        history.record("London", observation(0, 11));
+
+        assertArrayEquals(new long[]{START}, history.get("London", Long.MIN_VALUE, Long.MAX_VALUE).datetime());
+    }
+
+    @Test
+    void record_ShouldNotTrackMoreThanMaxCities() {
+        WeatherHistory history = new WeatherHistory(4, 2);
+        history.record("London", observation(START, 10));
+        history.record("Paris", observation(START, 12));
+        history.record("Berlin", observation(START, 8));
+        history.record("London", observation(START + STEP, 11));
+
+        assertEquals(2, history.cityCount());
+        assertNull(history.get("Berlin", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(2, history.get("London", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void forget_ShouldFreeTheSlotOfTheCity() {
+        WeatherHistory history = new WeatherHistory(4, 2);
+        history.record("London", observation(START, 10));
+        history.record("Paris", observation(START, 12));
+
+        history.forget("London");
+        history.record("Berlin", observation(START, 8));
+
+        assertEquals(2, history.cityCount());
+        assertNull(history.get("London", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(1, history.get("Berlin", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+}
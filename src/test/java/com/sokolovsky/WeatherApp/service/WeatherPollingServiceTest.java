@@ -1,13 +1,21 @@
 package com.sokolovsky.WeatherApp.service;
 
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
 import com.sokolovsky.WeatherApp.service.impl.WeatherPollingServiceImpl;
+import com.sokolovsky.WeatherApp.service.impl.WeatherRefreshSchedulerImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,4 +47,112 @@ class WeatherPollingServiceTest {
 
         verify(weatherService, atMost(1)).updateWeatherData(anyString());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void updateWeatherData_ShouldRefreshCitiesConcurrently() throws InterruptedException {
+        WeatherRefreshSchedulerImpl scheduler = new WeatherRefreshSchedulerImpl(3);
+        WeatherPollingServiceImpl pollingService = new WeatherPollingServiceImpl(weatherService, scheduler, Duration.ZERO);
+        when(weatherService.getCachedCities()).thenReturn(Set.of("London", "Paris", "Berlin"));
+        CountDownLatch allStarted = new CountDownLatch(3);
+        doAnswer(invocation -> {
+            allStarted.countDown();
+            if (!allStarted.await(1, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Cities were refreshed one at a time");
+            }
+            return null;
+        }).when(weatherService).updateWeatherData(anyString());
+
+        pollingService.start();
+
+        assertTrue(allStarted.await(2, TimeUnit.SECONDS));
+        awaitCompletedCycle(pollingService);
+        assertEquals(0, pollingService.getLastCycleFailures());
+        pollingService.stop();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void updateWeatherData_ShouldCountFailedCities() throws InterruptedException {
+        WeatherRefreshSchedulerImpl scheduler = new WeatherRefreshSchedulerImpl(2);
+        WeatherPollingServiceImpl pollingService = new WeatherPollingServiceImpl(weatherService, scheduler, Duration.ZERO);
+        when(weatherService.getCachedCities()).thenReturn(Set.of("London", "Atlantis"));
+        doNothing().when(weatherService).updateWeatherData("London");
+        doThrow(new WeatherApiException("City not found: Atlantis"))
+                .when(weatherService).updateWeatherData("Atlantis");
+
+        pollingService.start();
+
+        verify(weatherService, timeout(1000)).updateWeatherData("London");
+        verify(weatherService, timeout(1000)).updateWeatherData("Atlantis");
+        awaitCompletedCycle(pollingService);
+        assertEquals(1, pollingService.getLastCycleFailures());
+        pollingService.stop();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void sharedScheduler_ShouldDeregisterStoppedServices(@Mock WeatherService otherService) {
+        WeatherRefreshSchedulerImpl scheduler = new WeatherRefreshSchedulerImpl(2);
+        // a service may be stopped before its first cycle ran
+        lenient().when(weatherService.getCachedCities()).thenReturn(Set.of());
+        lenient().when(otherService.getCachedCities()).thenReturn(Set.of());
+        WeatherPollingService first = new WeatherPollingServiceImpl(weatherService, scheduler, Duration.ZERO);
+        WeatherPollingService second = new WeatherPollingServiceImpl(otherService, scheduler, Duration.ZERO);
+
+        first.start();
+        second.start();
+        assertEquals(2, scheduler.getRegistrationCount());
+
+        first.stop();
+        assertEquals(1, scheduler.getRegistrationCount());
+        second.stop();
+        assertEquals(0, scheduler.getRegistrationCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void stop_ShouldWaitForRunningRefreshes() throws Exception {
+        WeatherRefreshSchedulerImpl scheduler = new WeatherRefreshSchedulerImpl(2);
+        WeatherPollingServiceImpl pollingService = new WeatherPollingServiceImpl(weatherService, scheduler, Duration.ZERO);
+        when(weatherService.getCachedCities()).thenReturn(Set.of("London"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(weatherService).updateWeatherData("London");
+
+        pollingService.start();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(pollingService::stop);
+
+        assertThrows(TimeoutException.class, () -> stopped.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        stopped.get(1, TimeUnit.SECONDS);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void interval_ShouldRefreshCitiesBeforeTheyExpireDespiteJitter() {
+        WeatherRefreshSchedulerImpl scheduler = new WeatherRefreshSchedulerImpl(1);
+        WeatherPollingServiceImpl tenMinutes = new WeatherPollingServiceImpl(weatherService, scheduler,
+            Duration.ofSeconds(30), Duration.ofMinutes(10), null, 0, null);
+        WeatherPollingServiceImpl twoMinutes = new WeatherPollingServiceImpl(weatherService, scheduler,
+            Duration.ofMinutes(5), Duration.ofMinutes(2), null, 0, null);
+
+        assertEquals(Duration.ofSeconds(570).toMillis(), tenMinutes.getIntervalMillis());
+        assertEquals(Duration.ofSeconds(30).toMillis(), tenMinutes.getMaxJitterMillis());
+        assertEquals(Duration.ofMinutes(1).toMillis(), twoMinutes.getIntervalMillis());
+        assertEquals(Duration.ofMinutes(1).toMillis(), twoMinutes.getMaxJitterMillis());
+        scheduler.shutdown();
+    }
+
+    private static void awaitCompletedCycle(WeatherPollingServiceImpl pollingService) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (pollingService.getCompletedCycles() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pollingService.getCompletedCycles());
+    }
+}
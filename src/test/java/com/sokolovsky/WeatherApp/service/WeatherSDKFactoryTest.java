@@ -2,6 +2,7 @@ package com.sokolovsky.WeatherApp.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.config.WebConfig;
 import com.sokolovsky.WeatherApp.service.impl.WeatherSDKFactoryImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,14 +22,22 @@ class WeatherSDKFactoryTest {
     @Mock
     private RestTemplate restTemplate;
 
+    private final ObjectMapper objectMapper = new WebConfig().objectMapper();
+
+    @Mock
+    private GeocodeStore geocodeStore;
+
+    @Mock
+    private WeatherRefreshScheduler refreshScheduler;
+
     @Mock
-    private ObjectMapper objectMapper;
+    private WeatherFetchExecutor fetchExecutor;
 
     private WeatherSDKFactory factory;
 
     @BeforeEach
     void setUp() {
-        factory = new WeatherSDKFactoryImpl(config, restTemplate, objectMapper);
+        factory = new WeatherSDKFactoryImpl(config, restTemplate, objectMapper, geocodeStore, refreshScheduler, fetchExecutor);
     }
 
     @Test
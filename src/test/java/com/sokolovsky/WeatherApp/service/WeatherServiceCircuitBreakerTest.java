@@ -0,0 +1,110 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.exception.CircuitOpenException;
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamCircuitBreaker;
+import com.sokolovsky.WeatherApp.service.impl.WeatherServiceImpl;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the service against a stub that starts failing, to check that the circuit breaker stops
+ * sending calls to it and that expired data is served in the meantime.
+ */
+@ExtendWith(MockitoExtension.class)
+class WeatherServiceCircuitBreakerTest {
+    private static final int FAILURE_THRESHOLD = 3;
+
+    @Mock(lenient = true)
+    private WeatherConfig config;
+
+    private OpenWeatherStubServer stub;
+    private WeatherServiceImpl weatherService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        when(config.getMode()).thenReturn(WeatherConfig.Mode.ON_DEMAND);
+        when(config.getGeoUrl()).thenReturn(stub.geoUrl());
+        when(config.getWeatherUrl()).thenReturn(stub.weatherUrl());
+        when(config.getCacheTtl()).thenReturn(Duration.ofMillis(100));
+        when(config.getCircuitBreakerFailureThreshold()).thenReturn(FAILURE_THRESHOLD);
+        when(config.getCircuitBreakerOpenDuration()).thenReturn(Duration.ofMillis(500));
+        when(config.getCircuitBreakerMaxOpenDuration()).thenReturn(Duration.ofSeconds(5));
+        weatherService = new WeatherServiceImpl(new RestTemplate(), new WebConfig().objectMapper(), config, "test_key");
+    }
+
+    @AfterEach
+    void tearDown() {
+        weatherService.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void getRenderedWeather_ShouldServeStaleData_WhileCircuitIsOpen() throws Exception {
+        RenderedWeather fresh = weatherService.getRenderedWeatherAsync("London").get(5, TimeUnit.SECONDS);
+        assertFalse(fresh.stale());
+        Thread.sleep(150);
+        stub.setErrorRate(1.0);
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThrows(WeatherApiException.class, () -> weatherService.getWeatherData("London"));
+        }
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, weatherService.getCircuitBreaker().getState());
+        int callsWhenOpened = stub.weatherCalls();
+
+        for (int i = 0; i < 20; i++) {
+            RenderedWeather stale = weatherService.getRenderedWeatherAsync("London").get(5, TimeUnit.SECONDS);
+            assertTrue(stale.stale());
+            assertEquals(0, stale.maxAgeSeconds(System.currentTimeMillis()));
+            assertArrayEquals(fresh.json(), stale.json());
+        }
+        assertEquals(20.0, weatherService.getWeatherData("London").getMain().getTemp());
+        assertEquals(callsWhenOpened, stub.weatherCalls(), "Open circuit should not call upstream");
+        assertTrue(weatherService.getCircuitBreaker().getRejectedCount() > 0);
+
+        CompletionException e = assertThrows(CompletionException.class,
+            () -> weatherService.getRenderedWeatherAsync("Paris").join());
+        assertInstanceOf(CircuitOpenException.class, e.getCause(), "Without stale data the call should fail fast");
+    }
+
+    @Test
+    void getWeatherData_ShouldCloseCircuit_WhenUpstreamRecovers() throws Exception {
+        stub.setErrorRate(1.0);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThrows(WeatherApiException.class, () -> weatherService.getWeatherData("London"));
+        }
+        assertThrows(CircuitOpenException.class, () -> weatherService.getWeatherData("London"));
+
+        stub.setErrorRate(0);
+        Thread.sleep(600);
+
+        assertEquals(20.0, weatherService.getWeatherData("London").getMain().getTemp());
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, weatherService.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void getWeatherData_ShouldKeepCircuitClosed_ForUnknownCities() {
+        stub.addUnknownCity("Atlantis");
+        for (int i = 0; i < FAILURE_THRESHOLD * 2; i++) {
+            assertThrows(WeatherApiException.class, () -> weatherService.getWeatherData("Atlantis"));
+        }
+
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, weatherService.getCircuitBreaker().getState());
+    }
+}
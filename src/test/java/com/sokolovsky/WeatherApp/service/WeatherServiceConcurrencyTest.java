@@ -0,0 +1,131 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.impl.WeatherServiceImpl;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherServiceConcurrencyTest {
+    private static final int CALLERS = 16;
+
+    @Mock(lenient = true)
+    private WeatherConfig config;
+
+    private OpenWeatherStubServer stub;
+    private WeatherService weatherService;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        stub.setLatencyMillis(200);
+        when(config.getMode()).thenReturn(WeatherConfig.Mode.ON_DEMAND);
+        when(config.getGeoUrl()).thenReturn(stub.geoUrl());
+        when(config.getWeatherUrl()).thenReturn(stub.weatherUrl());
+        weatherService = new WeatherServiceImpl(new RestTemplate(), new WebConfig().objectMapper(), config, "test_key");
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        weatherService.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void getWeatherData_ShouldMakeSingleUpstreamFetch_ForConcurrentMisses() throws Exception {
+        List<Future<WeatherDTO>> results = fireConcurrently("London");
+
+        for (Future<WeatherDTO> result : results) {
+            assertEquals(20.0, result.get(5, TimeUnit.SECONDS).getMain().getTemp());
+        }
+        assertEquals(1, stub.geoCalls(), "Only one geo call should be made");
+        assertEquals(1, stub.weatherCalls(), "Only one weather call should be made");
+    }
+
+    @Test
+    void getWeatherData_ShouldPropagateFailureToAllWaiters_WithoutCaching() throws Exception {
+        stub.addUnknownCity("Atlantis");
+
+        List<Future<WeatherDTO>> results = fireConcurrently("Atlantis");
+
+        for (Future<WeatherDTO> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WeatherApiException.class, e.getCause());
+        }
+        assertEquals(1, stub.geoCalls(), "Only one geo call should be made");
+
+        assertThrows(WeatherApiException.class, () -> weatherService.getWeatherData("Atlantis"));
+        assertEquals(2, stub.geoCalls(), "Failure should not be cached");
+        assertFalse(weatherService.getCachedCities().contains("Atlantis"));
+    }
+
+    @Test
+    void getWeatherDataAsync_ShouldReleaseCallerWhileFetching() throws Exception {
+        List<CompletableFuture<WeatherDTO>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(weatherService.getWeatherDataAsync("City" + i));
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(submitMillis < 200, "Submitting should not wait for upstream calls, took " + submitMillis + " ms");
+        for (CompletableFuture<WeatherDTO> result : results) {
+            assertEquals(20.0, result.get(10, TimeUnit.SECONDS).getMain().getTemp());
+        }
+        assertEquals(CALLERS, stub.weatherCalls());
+        assertEquals(results.get(0).get(), weatherService.getWeatherDataAsync("City0").getNow(null),
+            "Cache hit should complete immediately");
+    }
+
+    @Test
+    void getWeatherDataAsync_ShouldShareInFlightFetchAndPropagateFailure() {
+        stub.addUnknownCity("Atlantis");
+
+        CompletableFuture<WeatherDTO> first = weatherService.getWeatherDataAsync("Atlantis");
+        CompletableFuture<WeatherDTO> second = weatherService.getWeatherDataAsync("Atlantis");
+
+        for (CompletableFuture<WeatherDTO> result : List.of(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WeatherApiException.class, e.getCause());
+        }
+        assertEquals(1, stub.geoCalls(), "Only one geo call should be made");
+    }
+
+    private List<Future<WeatherDTO>> fireConcurrently(String city) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WeatherDTO>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return weatherService.getWeatherData(city);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamHedger;
+import com.sokolovsky.WeatherApp.service.impl.WeatherServiceImpl;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Fetches many uncached cities from a stub where a few responses are much slower than the rest,
+ * with and without hedging, and compares the 99th percentile of the fetch latency.
+ * Being a wall-clock measurement it only runs with the {@code load} profile.
+ */
+@Slf4j
+@Tag("load")
+@ExtendWith(MockitoExtension.class)
+class WeatherServiceHedgingTest {
+    private static final int WARM_UP = 40;
+    private static final int REQUESTS = 300;
+    private static final long OUTLIER_MILLIS = 400;
+
+    @Mock(lenient = true)
+    private WeatherConfig config;
+
+    private OpenWeatherStubServer stub;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        stub.setLatencyMillis(2);
+        stub.setLatencyOutliers(0.02, OUTLIER_MILLIS);
+        restTemplate = WebConfig.pooledRestTemplate(
+            WebConfig.upstreamHttpClientBuilder(Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1).build(),
+            Duration.ofSeconds(5));
+        when(config.getMode()).thenReturn(WeatherConfig.Mode.ON_DEMAND);
+        when(config.getGeoUrl()).thenReturn(stub.geoUrl());
+        when(config.getWeatherUrl()).thenReturn(stub.weatherUrl());
+        when(config.getHedgePercentile()).thenReturn(0.9);
+        when(config.getHedgeMinDelay()).thenReturn(Duration.ofMillis(5));
+        when(config.getHedgeMaxRate()).thenReturn(0.2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void hedging_ShouldCutTailLatencyOfMisses() {
+        WeatherServiceImpl plain = newService(false);
+        long unhedgedP99;
+        try {
+            unhedgedP99 = measureP99(plain, "Plain");
+        } finally {
+            plain.shutdown();
+        }
+        WeatherServiceImpl hedged = newService(true);
+        long hedgedP99;
+        try {
+            hedgedP99 = measureP99(hedged, "Hedged");
+        } finally {
+            hedged.shutdown();
+        }
+        UpstreamHedger weatherHedger = hedged.getWeatherHedger();
+        log.info("p99 of misses: {} ms without hedging, {} ms with hedging; {} of {} weather calls hedged, {} won",
+            unhedgedP99, hedgedP99, weatherHedger.getHedgedCount(), weatherHedger.getCallCount(),
+            weatherHedger.getHedgeWinCount());
+
+        assertTrue(unhedgedP99 >= OUTLIER_MILLIS, "Outliers should dominate the tail without hedging");
+        assertTrue(hedgedP99 < unhedgedP99 / 2, "Hedging should cut the tail: " + hedgedP99 + " ms");
+        assertTrue(weatherHedger.getHedgedCount() <= weatherHedger.getCallCount() * 0.2 + 10);
+    }
+
+    private WeatherServiceImpl newService(boolean hedge) {
+        when(config.isHedgeEnabled()).thenReturn(hedge);
+        return new WeatherServiceImpl(restTemplate, new WebConfig().objectMapper(), config, "test_key");
+    }
+
+    private long measureP99(WeatherService service, String prefix) {
+        for (int i = 0; i < WARM_UP; i++) {
+            service.getWeatherData(prefix + "WarmUp" + i);
+        }
+        long[] latencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            service.getWeatherData(prefix + i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return TimeUnit.NANOSECONDS.toMillis(latencies[(int) Math.ceil(REQUESTS * 0.99) - 1]);
+    }
+}
@@ -0,0 +1,117 @@
+package com.sokolovsky.WeatherApp.service;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sokolovsky.WeatherApp.config.WeatherConfig;
+import com.sokolovsky.WeatherApp.config.WebConfig;
+import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.impl.EvictionStatsCounter;
+import com.sokolovsky.WeatherApp.service.impl.WeatherMetrics;
+import com.sokolovsky.WeatherApp.service.impl.WeatherServiceImpl;
+import com.sokolovsky.WeatherApp.support.OpenWeatherStubServer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherServiceMetricsTest {
+    @Mock(lenient = true)
+    private WeatherConfig config;
+
+    private OpenWeatherStubServer stub;
+    private SimpleMeterRegistry registry;
+    private WeatherServiceImpl weatherService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new OpenWeatherStubServer();
+        registry = new SimpleMeterRegistry();
+        when(config.getMode()).thenReturn(WeatherConfig.Mode.ON_DEMAND);
+        when(config.getGeoUrl()).thenReturn(stub.geoUrl());
+        when(config.getWeatherUrl()).thenReturn(stub.weatherUrl());
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        when(config.getCircuitBreakerFailureThreshold()).thenReturn(5);
+        when(config.getCircuitBreakerOpenDuration()).thenReturn(Duration.ofSeconds(5));
+        when(config.getCircuitBreakerMaxOpenDuration()).thenReturn(Duration.ofMinutes(2));
+        weatherService = new WeatherServiceImpl(new RestTemplate(), new WebConfig().objectMapper(), config,
+            "test_key", null, null, null, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        weatherService.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void getWeatherData_ShouldRecordCacheAndUpstreamMetrics() {
+        weatherService.getWeatherData("London");
+        weatherService.getWeatherData("London");
+        weatherService.getWeatherData("London");
+
+        assertEquals(1, cacheRequests("miss"));
+        assertEquals(2, cacheRequests("hit"));
+        assertEquals(1, upstreamTimer("geo", "success").count());
+        assertEquals(1, upstreamTimer("weather", "success").count());
+        assertEquals(1, registry.get("weather.upstream.parse").tag("api", "weather").timer().count());
+        assertEquals(1, registry.get("weather.cache.load").tag("outcome", "success").timer().count());
+        assertEquals(1.0, registry.get("weather.circuit.breaker.state").tag("state", "closed").gauge().value());
+    }
+
+    @Test
+    void getWeatherData_ShouldRecordFailedUpstreamCalls() {
+        stub.setErrorRate(1.0);
+
+        assertThrows(WeatherApiException.class, () -> weatherService.getWeatherData("London"));
+
+        assertEquals(1, upstreamTimer("geo", "error").count());
+        assertEquals(0, upstreamTimer("weather", "error").count());
+        assertEquals(1, registry.get("weather.cache.load").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void bindCache_ShouldCountEvictionsByCause() {
+        SimpleMeterRegistry cacheRegistry = new SimpleMeterRegistry();
+        EvictionStatsCounter statsCounter = new EvictionStatsCounter();
+        new WeatherMetrics(cacheRegistry, "hash").bindCache(mock(WeatherCache.class), statsCounter);
+
+        statsCounter.recordEviction(1, RemovalCause.SIZE);
+        statsCounter.recordEviction(1, RemovalCause.EXPIRED);
+        statsCounter.recordEviction(1, RemovalCause.EXPIRED);
+
+        assertEquals(1, cacheRegistry.get("weather.cache.evictions").tag("cause", "size").functionCounter().count());
+        assertEquals(2, cacheRegistry.get("weather.cache.evictions").tag("cause", "expired").functionCounter().count());
+        assertEquals(3, statsCounter.snapshot().evictionCount());
+    }
+
+    @Test
+    void shutdown_ShouldRemoveMeters() {
+        String keyHash = registry.get("weather.cache.requests").meter().getId().getTag("key");
+        assertNotNull(keyHash);
+        assertFalse(keyHash.contains("test_key"));
+
+        weatherService.shutdown();
+
+        assertTrue(registry.getMeters().isEmpty());
+    }
+
+    private double cacheRequests(String outcome) {
+        FunctionCounter counter = registry.get("weather.cache.requests").tag("outcome", outcome).functionCounter();
+        return counter.count();
+    }
+
+    private Timer upstreamTimer(String api, String outcome) {
+        return registry.get("weather.upstream.requests").tag("api", api).tag("outcome", outcome).timer();
+    }
+}
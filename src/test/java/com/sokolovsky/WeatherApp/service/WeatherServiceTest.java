@@ -1,29 +1,44 @@
 package com.sokolovsky.WeatherApp.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.sokolovsky.WeatherApp.config.WeatherConfig;
-import com.sokolovsky.WeatherApp.dto.GeocodingDTO;
+import com.sokolovsky.WeatherApp.config.WebConfig;
 import com.sokolovsky.WeatherApp.dto.WeatherDTO;
+import com.sokolovsky.WeatherApp.exception.RateLimitExceededException;
 import com.sokolovsky.WeatherApp.exception.WeatherApiException;
+import com.sokolovsky.WeatherApp.service.impl.UpstreamRateLimiter;
 import com.sokolovsky.WeatherApp.service.impl.WeatherServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class WeatherServiceTest {
+    private static final String GEO_RESPONSE = "[{\"lat\":51.5074,\"lon\":-0.1278}]";
 
     @Mock(lenient = true)
     private RestTemplate restTemplate;
@@ -31,8 +46,9 @@ class WeatherServiceTest {
     @Mock
     private WeatherConfig config;
 
-    @Mock(lenient = true)
-    private ObjectMapper objectMapper;
+    private final ObjectMapper objectMapper = new WebConfig().objectMapper();
+    private final AtomicInteger geoCalls = new AtomicInteger();
+    private final AtomicInteger weatherCalls = new AtomicInteger();
 
     private WeatherService weatherService;
 
@@ -41,69 +57,57 @@ class WeatherServiceTest {
         when(config.getMode()).thenReturn(WeatherConfig.Mode.ON_DEMAND);
         weatherService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
 
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn("[{\"lat\":51.5074,\"lon\":-0.1278}]", "{\"main\":{\"temp\":20.0}}");
+        respondWith(GEO_RESPONSE, call -> weatherResponse(20.0));
     }
 
-    @Test
-    void getWeatherData_ShouldReturnWeatherData() throws Exception {
-        String city = "London";
-        String geoResponse = "[{\"lat\":51.5074,\"lon\":-0.1278}]";
-        String weatherResponse = "{\"main\":{\"temp\":20.0}}";
-
-        GeocodingDTO geocodingDTO = new GeocodingDTO();
-        geocodingDTO.setLat(new BigDecimal("51.5074"));
-        geocodingDTO.setLon(new BigDecimal("-0.1278"));
-
-        WeatherDTO weatherDTO = new WeatherDTO();
-        WeatherDTO.Main main = new WeatherDTO.Main();
-        main.setTemp(20.0);
-        weatherDTO.setMain(main);
+    /**
+     * Serves upstream calls from the given bodies, choosing the weather body by the number of the weather call.
+     */
+    private void respondWith(String geoResponse, IntFunction<String> weatherResponses) {
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> {
+                    String url = invocation.getArgument(0);
+                    String body = url.contains("?q=")
+                            ? respond(geoCalls, geoResponse)
+                            : weatherResponses.apply(weatherCalls.incrementAndGet());
+                    ResponseExtractor<?> extractor = invocation.getArgument(3);
+                    return extractor.extractData(
+                        new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+                });
+    }
 
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn(geoResponse)
-                .thenReturn(weatherResponse);
+    private static String respond(AtomicInteger calls, String body) {
+        calls.incrementAndGet();
+        return body;
+    }
 
-        doReturn(List.of(geocodingDTO))
-                .when(objectMapper)
-                .readValue(anyString(), any(TypeReference.class));
+    private static String weatherResponse(double temp) {
+        return "{\"main\":{\"temp\":" + temp + "}}";
+    }
 
-        doReturn(weatherDTO)
-                .when(objectMapper)
-                .readValue(anyString(), eq(WeatherDTO.class));
+    private void verifyUpstreamCalls(int calls) {
+        verify(restTemplate, times(calls)).execute(anyString(), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class));
+    }
 
-        WeatherDTO result = weatherService.getWeatherData(city);
+    @Test
+    void getWeatherData_ShouldReturnWeatherData() throws Exception {
+        WeatherDTO result = weatherService.getWeatherData("London");
 
         assertNotNull(result);
         assertEquals(20.0, result.getMain().getTemp());
     }
 
+    @Test
+    void constructor_ShouldRejectBlankApiKey() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new WeatherServiceImpl(restTemplate, objectMapper, config, " "));
+        assertThrows(IllegalArgumentException.class,
+            () -> new WeatherServiceImpl(restTemplate, objectMapper, config, null));
+    }
+
     @Test
     void getWeatherData_ShouldUseCacheForRepeatedRequests() throws Exception {
         String city = "London";
-        String geoResponse = "[{\"lat\":51.5074,\"lon\":-0.1278}]";
-        String weatherResponse = "{\"main\":{\"temp\":20.0}}";
-
-        GeocodingDTO geocodingDTO = new GeocodingDTO();
-        geocodingDTO.setLat(new BigDecimal("51.5074"));
-        geocodingDTO.setLon(new BigDecimal("-0.1278"));
-
-        WeatherDTO weatherDTO = new WeatherDTO();
-        WeatherDTO.Main main = new WeatherDTO.Main();
-        main.setTemp(20.0);
-        weatherDTO.setMain(main);
-
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn(geoResponse)
-                .thenReturn(weatherResponse);
-
-        doReturn(List.of(geocodingDTO))
-                .when(objectMapper)
-                .readValue(anyString(), any(TypeReference.class));
-
-        doReturn(weatherDTO)
-                .when(objectMapper)
-                .readValue(anyString(), eq(WeatherDTO.class));
 
         WeatherDTO result1 = weatherService.getWeatherData(city);
         WeatherDTO result2 = weatherService.getWeatherData(city);
@@ -111,26 +115,64 @@ class WeatherServiceTest {
         assertNotNull(result1);
         assertNotNull(result2);
         assertEquals(result1.getMain().getTemp(), result2.getMain().getTemp());
+        verifyUpstreamCalls(2);
     }
 
     @Test
-    void cache_ShouldNotExceedMaxSize() throws Exception {
-        GeocodingDTO geocodingDTO = new GeocodingDTO();
-        geocodingDTO.setLat(new BigDecimal("51.5074"));
-        geocodingDTO.setLon(new BigDecimal("-0.1278"));
+    void getRenderedWeatherAsync_ShouldRenderOncePerFetch() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        weatherService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
 
-        WeatherDTO weatherResponse = new WeatherDTO();
-        WeatherDTO.Main main = new WeatherDTO.Main();
-        main.setTemp(20.0);
-        weatherResponse.setMain(main);
+        RenderedWeather first = weatherService.getRenderedWeatherAsync("London").get();
+        RenderedWeather second = weatherService.getRenderedWeatherAsync("London").get();
 
-        doReturn(List.of(geocodingDTO))
-                .when(objectMapper)
-                .readValue(anyString(), any(TypeReference.class));
+        assertSame(first.json(), second.json(), "Cache hits should reuse the rendered bytes");
+        assertEquals(objectMapper.readTree(first.json()), objectMapper.valueToTree(first.weather()));
+        assertFalse(new String(first.json(), StandardCharsets.UTF_8).contains("\n"));
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""));
+        assertTrue(first.maxAgeSeconds(System.currentTimeMillis()) > 9 * 60);
 
-        doReturn(weatherResponse)
-                .when(objectMapper)
-                .readValue(anyString(), eq(WeatherDTO.class));
+        respondWith(GEO_RESPONSE, call -> weatherResponse(25.0));
+        weatherService.updateWeatherData("London");
+        assertNotEquals(first.etag(), weatherService.getRenderedWeatherAsync("London").get().etag());
+    }
+
+    @Test
+    void offHeapBackend_ShouldServeCachedWeather() throws Exception {
+        when(config.getCacheBackend()).thenReturn(WeatherConfig.CacheBackend.OFF_HEAP);
+        when(config.getCacheMaxSize()).thenReturn(10L);
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        weatherService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        WeatherDTO first = weatherService.getWeatherData("London");
+        WeatherDTO second = weatherService.getWeatherData("London");
+
+        assertEquals(first, second);
+        assertEquals(20.0, second.getMain().getTemp());
+        assertEquals(Set.of("London"), weatherService.getCachedCities());
+        verifyUpstreamCalls(2);
+    }
+
+    @Test
+    void snapshot_ShouldRestoreCacheAfterRestart(@TempDir Path dir) throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        when(config.getCacheSnapshotDir()).thenReturn(dir.toString());
+        weatherService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+        WeatherDTO before = weatherService.getWeatherData("London");
+        weatherService.shutdown();
+
+        WeatherService restarted = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        assertEquals(Set.of("London"), restarted.getCachedCities());
+        assertEquals(before, restarted.getWeatherData("London"));
+        verifyUpstreamCalls(2);
+        restarted.shutdown();
+    }
+
+    @Test
+    void cache_ShouldNotExceedMaxSize() throws Exception {
+        when(config.getCacheMaxSize()).thenReturn(10L);
+        weatherService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
 
         String[] cities = {
                 "London", "Paris", "Berlin", "Madrid", "Rome",
@@ -152,6 +194,178 @@ class WeatherServiceTest {
                 "Cache should contain the latest city");
     }
 
+    @Test
+    void updateWeatherData_ShouldReuseCachedLocation() throws Exception {
+        weatherService.getWeatherData("London");
+        weatherService.updateWeatherData("London");
+
+        verifyUpstreamCalls(3);
+        assertEquals(1, geoCalls.get());
+
+        CacheStats geoStats = ((WeatherServiceImpl) weatherService).getGeoCacheStats();
+        assertEquals(1, geoStats.hitCount());
+        assertEquals(1, geoStats.missCount());
+    }
+
+    @Test
+    void cacheStats_ShouldRecordHitsMissesAndLoads() throws Exception {
+        weatherService.getWeatherData("London");
+        weatherService.getWeatherData("London");
+
+        CacheStats stats = ((WeatherServiceImpl) weatherService).getCacheStats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.loadSuccessCount());
+    }
+
+    @Test
+    void history_ShouldKeepObservationsAcrossExpiries() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMillis(100));
+        when(config.getHistorySize()).thenReturn(10);
+        when(config.getHistoryMaxCities()).thenReturn(10);
+        WeatherService historyService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+        respondWith(GEO_RESPONSE, call -> "{\"dt\":" + (1740934487L + call * 600) + ",\"main\":{\"temp\":" + call + "}}");
+
+        for (int i = 0; i < 5; i++) {
+            historyService.getWeatherData("London");
+            Thread.sleep(150);
+        }
+
+        assertEquals(5, weatherCalls.get());
+        assertEquals(5, historyService.getWeatherHistory("London", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        historyService.shutdown();
+    }
+
+    @Test
+    void refreshAhead_ShouldServeCachedValueWhileReloadingInBackground() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        when(config.getCacheRefreshAfter()).thenReturn(Duration.ofMillis(100));
+        when(config.getCacheRefreshThreads()).thenReturn(1);
+        WeatherService refreshingService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        respondWith(GEO_RESPONSE, call -> {
+            if (call == 1) {
+                return weatherResponse(20.0);
+            }
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return weatherResponse(25.0);
+        });
+
+        assertEquals(20.0, refreshingService.getWeatherData("London").getMain().getTemp());
+        Thread.sleep(200);
+        assertEquals(20.0, refreshingService.getWeatherData("London").getMain().getTemp(),
+            "Stale value should be served immediately");
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (refreshingService.getWeatherData("London").getMain().getTemp() != 25.0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(25.0, refreshingService.getWeatherData("London").getMain().getTemp());
+        assertEquals(2, weatherCalls.get());
+        refreshingService.shutdown();
+    }
+
+    @Test
+    void refreshAhead_ShouldJoinInFlightFetchInsteadOfReloading() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMinutes(10));
+        when(config.getCacheRefreshAfter()).thenReturn(Duration.ofMillis(100));
+        when(config.getCacheRefreshThreads()).thenReturn(1);
+        WeatherService refreshingService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        respondWith(GEO_RESPONSE, call -> {
+            if (call > 1) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return weatherResponse(20.0 + call);
+        });
+
+        refreshingService.getWeatherData("London");
+        Thread.sleep(200);
+        Thread update = new Thread(() -> refreshingService.updateWeatherData("London"));
+        update.start();
+        Thread.sleep(50);
+        refreshingService.getWeatherData("London");
+
+        update.join(1000);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (refreshingService.getWeatherData("London").getMain().getTemp() != 22.0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(22.0, refreshingService.getWeatherData("London").getMain().getTemp());
+        assertEquals(2, weatherCalls.get(), "Reload should share the in-flight fetch");
+        refreshingService.shutdown();
+    }
+
+    @Test
+    void accessExpiry_ShouldNotKeepEntriesBeyondTtlSinceFetch() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMillis(400));
+        when(config.getCacheExpiry()).thenReturn(WeatherConfig.CacheExpiry.ACCESS);
+        WeatherService accessService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        long start = System.currentTimeMillis();
+        accessService.getWeatherData("London");
+        while (System.currentTimeMillis() - start < 600) {
+            accessService.getWeatherData("London");
+            Thread.sleep(50);
+        }
+
+        assertEquals(2, weatherCalls.get(), "Reads should not extend an entry beyond the TTL since its fetch");
+        accessService.shutdown();
+    }
+
+    @Test
+    void rateLimit_ShouldFailFastWhenBucketIsEmpty() throws Exception {
+        when(config.getRateLimitCallsPerMinute()).thenReturn(2);
+        when(config.getRateLimitOnExhausted()).thenReturn(WeatherConfig.RateLimitMode.FAIL_FAST);
+        WeatherService limitedService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        assertNotNull(limitedService.getWeatherData("London"));
+        assertThrows(RateLimitExceededException.class, () -> limitedService.getWeatherData("Paris"));
+
+        verifyUpstreamCalls(2);
+        assertEquals(1, ((WeatherServiceImpl) limitedService).getRateLimiter()
+                .getRejectedCount(UpstreamRateLimiter.Priority.ON_DEMAND));
+    }
+
+    @Test
+    void rateLimit_ShouldServeStaleValueWhenBucketIsEmpty() throws Exception {
+        when(config.getCacheTtl()).thenReturn(Duration.ofMillis(50));
+        when(config.getRateLimitCallsPerMinute()).thenReturn(2);
+        when(config.getRateLimitOnExhausted()).thenReturn(WeatherConfig.RateLimitMode.SERVE_STALE);
+        WeatherService limitedService = new WeatherServiceImpl(restTemplate, objectMapper, config, "test_key");
+
+        WeatherDTO weatherDTO = limitedService.getWeatherData("London");
+        Thread.sleep(100);
+        assertEquals(weatherDTO, limitedService.getWeatherData("London"), "Expired value should be served");
+
+        verifyUpstreamCalls(2);
+    }
+
+    @Test
+    void updateListener_ShouldOnlyBeNotifiedWhenWeatherChanged() throws Exception {
+        respondWith(GEO_RESPONSE, call -> weatherResponse(call < 3 ? 20.0 : 25.0));
+
+        List<WeatherDTO> updates = new ArrayList<>();
+        weatherService.addUpdateListener((city, weather) -> updates.add(weather));
+
+        weatherService.getWeatherData("London");
+        weatherService.updateWeatherData("London");
+        weatherService.updateWeatherData("London");
+
+        assertEquals(2, updates.size(), "Unchanged refresh should not notify listeners");
+        assertEquals(25.0, updates.get(1).getMain().getTemp());
+    }
+
     @Test
     void pollingMode_ShouldStartPollingService() {
         when(config.getMode()).thenReturn(WeatherConfig.Mode.POLLING);
@@ -165,11 +379,20 @@ class WeatherServiceTest {
     @Test
     void getWeatherData_ShouldThrowWeatherApiException_WhenCityNotFound() throws Exception {
         String city = "NonExistentCity";
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn("[]");
+        respondWith("[]", call -> weatherResponse(20.0));
 
         assertThrows(WeatherApiException.class,
                 () -> weatherService.getWeatherData(city),
                 "Should throw WeatherApiException when city not found");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void getWeatherData_ShouldThrowWeatherApiException_WhenResponseIsMalformed() throws Exception {
+        respondWith(GEO_RESPONSE, call -> "{\"main\":");
+
+        assertThrows(WeatherApiException.class,
+                () -> weatherService.getWeatherData("London"),
+                "Should throw WeatherApiException when response cannot be parsed");
+        assertFalse(weatherService.getCachedCities().contains("London"));
+    }
+}
@@ -0,0 +1,220 @@
+package com.sokolovsky.WeatherApp.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the OpenWeather geocoding and current weather endpoints.
+ * Counts upstream calls and can inject latency and errors, so tests can assert how often the service goes
+ * upstream and how it copes with a failing upstream.
+ * Can serve HTTPS with a self-signed certificate for 127.0.0.1, trusted by {@link #tlsContext()}.
+ */
+public class OpenWeatherStubServer implements AutoCloseable {
+    private static final String GEO_PATH = "/geo/1.0/direct";
+    private static final String WEATHER_PATH = "/data/2.5/weather";
+    private static final String KEY_STORE = "/stub-tls.p12";
+    private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+
+    static {
+        // The JDK server flushes headers and body separately; without this, Nagle's algorithm
+        // and delayed ACKs add about 40 ms to every response on a kept-alive connection.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger geoCalls = new AtomicInteger();
+    private final AtomicInteger weatherCalls = new AtomicInteger();
+    private final Set<String> unknownCities = ConcurrentHashMap.newKeySet();
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+    private volatile double outlierRate;
+    private volatile long outlierLatencyMillis;
+    private final AtomicLong responses = new AtomicLong();
+    private volatile double temperature = 20.0;
+
+    public OpenWeatherStubServer() throws IOException {
+        this(null);
+    }
+
+    /**
+     * @param sslContext Context to serve HTTPS with, or null for plain HTTP
+     */
+    public OpenWeatherStubServer(SSLContext sslContext) throws IOException {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+        if (sslContext != null) {
+            HttpsServer httpsServer = HttpsServer.create(address, 0);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            this.server = httpsServer;
+        } else {
+            this.server = HttpServer.create(address, 0);
+        }
+        this.executor = Executors.newCachedThreadPool();
+        server.createContext(GEO_PATH, this::handleGeo);
+        server.createContext(WEATHER_PATH, this::handleWeather);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns an SSL context holding the stub certificate both as key and as trusted certificate,
+     * usable for the HTTPS stub server as well as for clients calling it.
+     */
+    public static SSLContext tlsContext() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = OpenWeatherStubServer.class.getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEY_STORE_PASSWORD);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    public String geoUrl() {
+        return baseUrl() + GEO_PATH;
+    }
+
+    public String weatherUrl() {
+        return baseUrl() + WEATHER_PATH;
+    }
+
+    public int geoCalls() {
+        return geoCalls.get();
+    }
+
+    public int weatherCalls() {
+        return weatherCalls.get();
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Delays the given fraction of responses from now on by an extra latency. Outliers are spread
+     * evenly rather than randomly, so two consecutive responses are never both slow for rates up to 0.5.
+     *
+     * @param outlierRate Fraction of slow responses, 0 for none
+     * @param outlierLatencyMillis Latency added to each slow response
+     */
+    public void setLatencyOutliers(double outlierRate, long outlierLatencyMillis) {
+        this.outlierRate = outlierRate;
+        this.outlierLatencyMillis = outlierLatencyMillis;
+    }
+
+    /**
+     * Makes the given fraction of responses from now on fail with SERVICE_UNAVAILABLE.
+     *
+     * @param errorRate Fraction of failing responses, 0 for none, 1 for all
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets the temperature reported by the weather endpoint from now on.
+     */
+    public void setTemperature(double temperature) {
+        this.temperature = temperature;
+    }
+
+    /**
+     * Makes the geocoding endpoint answer with an empty list for the given city.
+     */
+    public void addUnknownCity(String city) {
+        unknownCities.add(city);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String baseUrl() {
+        String scheme = server instanceof HttpsServer ? "https" : "http";
+        return scheme + "://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handleGeo(HttpExchange exchange) throws IOException {
+        geoCalls.incrementAndGet();
+        String city = queryParams(exchange).getOrDefault("q", "");
+        String body = unknownCities.contains(city)
+                ? "[]"
+                : "[{\"name\":\"" + city + "\",\"lat\":51.5074,\"lon\":-0.1278,\"country\":\"GB\"}]";
+        respond(exchange, body);
+    }
+
+    private void handleWeather(HttpExchange exchange) throws IOException {
+        weatherCalls.incrementAndGet();
+        String body = "{\"weather\":[{\"main\":\"Clouds\",\"description\":\"overcast clouds\"}],"
+                + "\"main\":{\"temp\":" + temperature + ",\"feels_like\":19.5},\"visibility\":10000,"
+                + "\"wind\":{\"speed\":3.1},\"dt\":1740934487,"
+                + "\"sys\":{\"sunrise\":1740888499,\"sunset\":1740926935},"
+                + "\"timezone\":0,\"name\":\"Stub\"}";
+        respond(exchange, body);
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        long response = responses.incrementAndGet();
+        boolean outlier = (long) (response * outlierRate) != (long) ((response - 1) * outlierRate);
+        long delay = latencyMillis + (outlier ? outlierLatencyMillis : 0);
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean fail = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        byte[] bytes = (fail ? "{\"cod\":503,\"message\":\"Service unavailable\"}" : body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(fail ? 503 : 200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}